@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.CastExpression;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.IfThenElse;
+import gov.nasa.jpf.constraints.expressions.LogicalOperator;
+import gov.nasa.jpf.constraints.expressions.Negation;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.expressions.PropositionalCompound;
+import gov.nasa.jpf.constraints.expressions.UnaryMinus;
+import gov.nasa.jpf.constraints.solvers.smtinterpol.exception.TermParserException;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import gov.nasa.jpf.constraints.types.Type;
+import gov.nasa.jpf.constraints.util.ExpressionUtil;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the expressions for SMT-LIB terms read back from SMTInterpol.
+ *
+ * All nodes are created through the protected factory methods, and the
+ * parsers pass the variables they refer to through {@link #variable},
+ * so subclasses such as {@link InterningExpressionFactory} can share them.
+ */
+public class ExpressionFactory {
+
+    /**
+     * translates the application of an SMT-LIB operator.
+     */
+    public Expression apply(String op, List<Expression> sub) throws TermParserException {
+        switch (op) {
+            case "=":
+                arity(op, sub, 2, -1);
+                return chain(sub, NumericComparator.EQ);
+            case "distinct":
+                arity(op, sub, 2, -1);
+                return distinct(sub);
+            case ">=":
+                arity(op, sub, 2, -1);
+                return chain(sub, NumericComparator.GE);
+            case "<=":
+                arity(op, sub, 2, -1);
+                return chain(sub, NumericComparator.LE);
+            case ">":
+                arity(op, sub, 2, -1);
+                return chain(sub, NumericComparator.GT);
+            case "<":
+                arity(op, sub, 2, -1);
+                return chain(sub, NumericComparator.LT);
+            case "-":
+                arity(op, sub, 1, -1);
+                if (sub.size() == 1) {
+                    return unaryMinus(sub.get(0));
+                }
+                return fold(sub, NumericOperator.MINUS);
+            case "+":
+                arity(op, sub, 2, -1);
+                return fold(sub, NumericOperator.PLUS);
+            case "*":
+                arity(op, sub, 2, -1);
+                return fold(sub, NumericOperator.MUL);
+            case "div": {
+                arity(op, sub, 2, -1);
+                Expression q = sub.get(0);
+                for (int i = 1; i < sub.size(); i++) {
+                    q = euclideanDiv(q, sub.get(i));
+                }
+                return q;
+            }
+            case "mod":
+                arity(op, sub, 2, 2);
+                return euclideanMod(sub.get(0), sub.get(1));
+            case "and":
+                return and(sub);
+            case "or":
+                return or(sub);
+            case "not":
+                arity(op, sub, 1, 1);
+                return negation(sub.get(0));
+            case "=>":
+                arity(op, sub, 2, -1);
+                return implication(sub);
+            case "xor":
+                arity(op, sub, 2, -1);
+                return junction(sub, LogicalOperator.XOR, ExpressionUtil.FALSE);
+            case "ite":
+                arity(op, sub, 3, 3);
+                return ite(sub.get(0), sub.get(1), sub.get(2));
+        }
+        throw new TermParserException("unknown operator: " + op);
+    }
+
+    /**
+     * SMT-LIB div and mod are Euclidean, DIV and REM truncate towards zero
+     * (see {@link SMTInterpolExpressionGenerator}). The Euclidean remainder
+     * is a REM b, plus |b| if that is negative.
+     */
+    private Expression euclideanMod(Expression a, Expression b) {
+        Expression r = compound(a, NumericOperator.REM, b);
+        Expression zero = parsed(b.getType(), "0");
+        Expression abs;
+        if (b instanceof Constant) {
+            BigInteger v = new BigInteger(((Constant) b).getValue().toString());
+            abs = v.signum() < 0 ? parsed(b.getType(), v.negate().toString()) : b;
+        } else {
+            abs = ite(compare(b, NumericComparator.GE, zero), b, unaryMinus(b));
+        }
+        return ite(compare(r, NumericComparator.LT, zero),
+                compound(r, NumericOperator.PLUS, abs), r);
+    }
+
+    /**
+     * a - (a mod b) is a multiple of b, so truncating division is exact.
+     */
+    private Expression euclideanDiv(Expression a, Expression b) {
+        return compound(compound(a, NumericOperator.MINUS, euclideanMod(a, b)),
+                NumericOperator.DIV, b);
+    }
+
+    /**
+     * @param max maximal number of arguments, -1 for any number
+     */
+    private static void arity(String op, List<Expression> sub, int min, int max)
+            throws TermParserException {
+        if (sub.size() < min || (max >= 0 && sub.size() > max)) {
+            throw new TermParserException("wrong number of arguments for " + op
+                    + ": " + sub.size());
+        }
+    }
+
+    /**
+     * @return an int constant if the numeral fits, an integer constant otherwise
+     */
+    public Expression numeral(String token) {
+        BigInteger value = new BigInteger(token);
+        if (value.bitLength() < 32) {
+            return constant(BuiltinTypes.SINT32, value.intValue());
+        }
+        return constant(BuiltinTypes.INTEGER, value);
+    }
+
+    public Expression and(List<Expression> sub) {
+        return junction(sub, LogicalOperator.AND, ExpressionUtil.TRUE);
+    }
+
+    public Expression or(List<Expression> sub) {
+        return junction(sub, LogicalOperator.OR, ExpressionUtil.FALSE);
+    }
+
+    /**
+     * @return the variable to use for v
+     */
+    protected Variable variable(Variable v) {
+        return v;
+    }
+
+    protected Expression constant(Type type, Object value) {
+        return new Constant(type, value);
+    }
+
+    private Expression parsed(Type type, String value) {
+        return constant(type, Constant.createParsed(type, value).getValue());
+    }
+
+    protected Expression compare(Expression l, NumericComparator cmp, Expression r) {
+        if (cmp == NumericComparator.EQ
+                && l.getType() instanceof BuiltinTypes.BoolType) {
+            return propositional(l, LogicalOperator.EQUIV, r);
+        }
+        return new NumericBooleanExpression(l, cmp, r);
+    }
+
+    protected Expression compound(Expression l, NumericOperator op, Expression r) {
+        return new NumericCompound(l, op, r);
+    }
+
+    protected Expression propositional(Expression l, LogicalOperator op, Expression r) {
+        return new PropositionalCompound(l, op, r);
+    }
+
+    protected Expression negation(Expression e) {
+        return new Negation(e);
+    }
+
+    protected Expression unaryMinus(Expression e) {
+        return new UnaryMinus(e);
+    }
+
+    protected Expression ite(Expression c, Expression t, Expression e) {
+        return new IfThenElse(c, t, e);
+    }
+
+    protected Expression cast(Expression e, Type type) {
+        return new CastExpression(e, type);
+    }
+
+    private Expression junction(List<Expression> sub, LogicalOperator op, Expression neutral) {
+        if (sub.isEmpty()) {
+            return neutral;
+        }
+        Expression ret = sub.get(0);
+        for (int i = 1; i < sub.size(); i++) {
+            ret = propositional(ret, op, sub.get(i));
+        }
+        return ret;
+    }
+
+    // right associative
+    private Expression implication(List<Expression> sub) {
+        Expression ret = sub.get(sub.size() - 1);
+        for (int i = sub.size() - 2; i >= 0; i--) {
+            ret = propositional(sub.get(i), LogicalOperator.IMPLY, ret);
+        }
+        return ret;
+    }
+
+    private Expression fold(List<Expression> sub, NumericOperator op) {
+        Expression ret = sub.get(0);
+        for (int i = 1; i < sub.size(); i++) {
+            ret = compound(ret, op, sub.get(i));
+        }
+        return ret;
+    }
+
+    private Expression chain(List<Expression> sub, NumericComparator cmp) {
+        List<Expression> parts = new ArrayList<>(sub.size() - 1);
+        for (int i = 0; i + 1 < sub.size(); i++) {
+            parts.add(compare(sub.get(i), cmp, sub.get(i + 1)));
+        }
+        return and(parts);
+    }
+
+    private Expression distinct(List<Expression> sub) {
+        List<Expression> parts = new ArrayList<>();
+        for (int i = 0; i < sub.size(); i++) {
+            for (int j = i + 1; j < sub.size(); j++) {
+                parts.add(negation(compare(sub.get(i), NumericComparator.EQ, sub.get(j))));
+            }
+        }
+        return and(parts);
+    }
+}
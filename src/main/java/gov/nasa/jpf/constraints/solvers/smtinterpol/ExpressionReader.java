@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.LogicalOperator;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import gov.nasa.jpf.constraints.types.Type;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static gov.nasa.jpf.constraints.solvers.smtinterpol.ExpressionWriter.*;
+
+/**
+ * Reads expressions written by {@link ExpressionWriter}.
+ *
+ * The reader works directly on the given buffer, which may be a heap,
+ * direct, or memory-mapped buffer; it starts at the buffer's position and
+ * leaves the position after the data read. Nodes are created through an
+ * {@link ExpressionFactory}, so an {@link InterningExpressionFactory} can
+ * share them with other expressions.
+ */
+public final class ExpressionReader {
+
+    private static final NumericComparator[] COMPARATORS = NumericComparator.values();
+
+    private static final NumericOperator[] OPERATORS = NumericOperator.values();
+
+    private static final LogicalOperator[] LOGICAL = LogicalOperator.values();
+
+    private final Map<String, Variable<?>> known = new HashMap<>();
+
+    private final ExpressionFactory factory;
+
+    public ExpressionReader() {
+        this(Collections.<Variable<?>>emptyList(), new ExpressionFactory());
+    }
+
+    /**
+     * @param vars variables to use for equal variables in the table; other
+     * variables are created
+     */
+    public ExpressionReader(Collection<? extends Variable<?>> vars,
+            ExpressionFactory factory) {
+        for (Variable<?> v : vars) {
+            known.put(v.getName(), v);
+        }
+        this.factory = factory;
+    }
+
+    public List<Expression<?>> read(ByteBuffer in) throws IOException {
+        try {
+            return doRead(in);
+        } catch (BufferUnderflowException ex) {
+            throw new EOFException("Truncated expression data");
+        } catch (IndexOutOfBoundsException | ClassCastException ex) {
+            throw new StreamCorruptedException("Invalid expression data: " + ex);
+        }
+    }
+
+    private List<Expression<?>> doRead(ByteBuffer in) throws IOException {
+        if ((in.getShort() & 0xFFFF) != MAGIC) {
+            throw new StreamCorruptedException("Not an expression buffer");
+        }
+        if (in.get() != VERSION) {
+            throw new StreamCorruptedException("Unsupported version");
+        }
+
+        Variable<?>[] vars = new Variable<?>[count(in)];
+        for (int i = 0; i < vars.length; i++) {
+            Type<?> type = TYPES[in.get()];
+            String name = string(in, count(in));
+            Variable<?> v = known.get(name);
+            vars[i] = factory.variable(
+                    v != null && v.getType().equals(type) ? v : new Variable(type, name));
+        }
+
+        Expression[] nodes = new Expression[count(in)];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = node(in, i, nodes, vars);
+        }
+
+        int n = count(in);
+        List<Expression<?>> ret = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ret.add(nodes[count(in)]);
+        }
+        return ret;
+    }
+
+    private Expression node(ByteBuffer in, int self, Expression[] nodes,
+            Variable<?>[] vars) throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case VAR:
+                return vars[count(in)];
+            case TRUE:
+                return factory.constant(BuiltinTypes.BOOL, true);
+            case FALSE:
+                return factory.constant(BuiltinTypes.BOOL, false);
+            case NUMBER: {
+                Type<?> type = TYPES[in.get()];
+                long zz = varint(in);
+                return factory.constant(type, number(type, (zz >>> 1) ^ -(zz & 1)));
+            }
+            case BIG_NUMBER: {
+                Type<?> type = TYPES[in.get()];
+                byte[] bytes = new byte[count(in)];
+                in.get(bytes);
+                return factory.constant(type, new BigInteger(bytes));
+            }
+            case COMPARE: {
+                NumericComparator cmp = COMPARATORS[in.get()];
+                Expression l = ref(in, self, nodes);
+                return factory.compare(l, cmp, ref(in, self, nodes));
+            }
+            case COMPOUND: {
+                NumericOperator op = OPERATORS[in.get()];
+                Expression l = ref(in, self, nodes);
+                return factory.compound(l, op, ref(in, self, nodes));
+            }
+            case PROPOSITIONAL: {
+                LogicalOperator op = LOGICAL[in.get()];
+                Expression l = ref(in, self, nodes);
+                return factory.propositional(l, op, ref(in, self, nodes));
+            }
+            case NOT:
+                return factory.negation(ref(in, self, nodes));
+            case UNARY_MINUS:
+                return factory.unaryMinus(ref(in, self, nodes));
+            case ITE: {
+                Expression c = ref(in, self, nodes);
+                Expression t = ref(in, self, nodes);
+                return factory.ite(c, t, ref(in, self, nodes));
+            }
+            case CAST: {
+                Type<?> from = TYPES[in.get()];
+                Type<?> to = TYPES[in.get()];
+                Expression e = ref(in, self, nodes);
+                if (!e.getType().equals(from)) {
+                    throw new StreamCorruptedException("Cast from " + e.getType()
+                            + " recorded as cast from " + from);
+                }
+                return factory.cast(e, to);
+            }
+            default:
+                throw new StreamCorruptedException("Unknown node tag " + tag);
+        }
+    }
+
+    private static Object number(Type<?> type, long value) throws IOException {
+        if (type == BuiltinTypes.SINT8) {
+            return (byte) value;
+        }
+        if (type == BuiltinTypes.SINT16) {
+            return (short) value;
+        }
+        if (type == BuiltinTypes.SINT32) {
+            return (int) value;
+        }
+        if (type == BuiltinTypes.SINT64) {
+            return value;
+        }
+        if (type == BuiltinTypes.UINT16) {
+            return (char) value;
+        }
+        if (type == BuiltinTypes.INTEGER) {
+            return BigInteger.valueOf(value);
+        }
+        throw new StreamCorruptedException("Invalid number type " + type);
+    }
+
+    private static Expression ref(ByteBuffer in, int self, Expression[] nodes)
+            throws IOException {
+        int delta = count(in);
+        if (delta < 1 || delta > self) {
+            throw new StreamCorruptedException("Invalid node reference");
+        }
+        return nodes[self - delta];
+    }
+
+    private static String string(ByteBuffer in, int length) {
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (in.hasArray()) {
+            String ret = new String(in.array(), in.arrayOffset() + in.position(),
+                    length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return ret;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int count(ByteBuffer in) throws IOException {
+        long v = varint(in);
+        if (v < 0 || v > Integer.MAX_VALUE) {
+            throw new StreamCorruptedException("Invalid count " + v);
+        }
+        return (int) v;
+    }
+
+    private static long varint(ByteBuffer in) throws IOException {
+        long ret = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            ret |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return ret;
+            }
+        }
+        throw new StreamCorruptedException("Invalid varint");
+    }
+}
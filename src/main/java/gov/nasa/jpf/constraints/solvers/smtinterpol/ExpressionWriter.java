@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.CastExpression;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.IfThenElse;
+import gov.nasa.jpf.constraints.expressions.Negation;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.PropositionalCompound;
+import gov.nasa.jpf.constraints.expressions.UnaryMinus;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import gov.nasa.jpf.constraints.types.Type;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes expressions in a compact binary format, read by
+ * {@link ExpressionReader}.
+ *
+ * <pre>
+ * MAGIC VERSION
+ * #vars  (type name)*          variable table
+ * #nodes node*                 all subexpressions, children first
+ * #roots ref*                  the expressions written
+ * </pre>
+ *
+ * Counts, indices, and integer values are variable-length encoded, and a
+ * node refers to its children by the distance to their own (earlier)
+ * positions, which is small for most nodes. Every distinct subexpression
+ * is written once, so sharing between and within the written expressions
+ * is preserved.
+ */
+public final class ExpressionWriter {
+
+    static final int MAGIC = 0x4A43;
+
+    static final byte VERSION = 1;
+
+    // node tags
+    static final byte VAR = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte NUMBER = 3;
+    static final byte BIG_NUMBER = 4;
+    static final byte COMPARE = 5;
+    static final byte COMPOUND = 6;
+    static final byte PROPOSITIONAL = 7;
+    static final byte NOT = 8;
+    static final byte UNARY_MINUS = 9;
+    static final byte ITE = 10;
+    static final byte CAST = 11;
+
+    static final Type<?>[] TYPES = {
+        BuiltinTypes.BOOL, BuiltinTypes.SINT8, BuiltinTypes.SINT16,
+        BuiltinTypes.SINT32, BuiltinTypes.SINT64, BuiltinTypes.UINT16,
+        BuiltinTypes.INTEGER
+    };
+
+    private ByteBuffer out = ByteBuffer.allocate(256);
+
+    private final Map<Variable<?>, Integer> vars = new LinkedHashMap<>();
+
+    private final Map<Expression<?>, Integer> nodes = new IdentityHashMap<>();
+
+    private ByteBuffer body = ByteBuffer.allocate(256);
+
+    private ExpressionWriter() {
+    }
+
+    /**
+     * @return a buffer containing exprsn, ready for reading
+     */
+    public static ByteBuffer write(List<? extends Expression<?>> exprsn) {
+        ExpressionWriter w = new ExpressionWriter();
+        int[] roots = new int[exprsn.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = w.node(exprsn.get(i));
+        }
+        w.body.flip();
+
+        w.out.putShort((short) MAGIC);
+        w.out.put(VERSION);
+        w.varint(w.vars.size());
+        for (Variable<?> v : w.vars.keySet()) {
+            w.out = ensure(w.out, 1);
+            w.out.put((byte) typeIndex(v.getType()));
+            byte[] name = v.getName().getBytes(StandardCharsets.UTF_8);
+            w.varint(name.length);
+            w.out = ensure(w.out, name.length);
+            w.out.put(name);
+        }
+        w.varint(w.nodes.size());
+        w.out = ensure(w.out, w.body.remaining());
+        w.out.put(w.body);
+        w.varint(roots.length);
+        for (int r : roots) {
+            w.varint(r);
+        }
+        w.out.flip();
+        return w.out;
+    }
+
+    /**
+     * writes e and all its subexpressions not written yet.
+     *
+     * @return the index of e
+     */
+    private int node(Expression<?> root) {
+        Integer done = nodes.get(root);
+        if (done != null) {
+            return done;
+        }
+        // post-order without recursion: SSA chains are deep
+        Deque<Expression<?>> todo = new ArrayDeque<>();
+        todo.push(root);
+        while (!todo.isEmpty()) {
+            Expression<?> e = todo.peek();
+            if (nodes.containsKey(e)) {
+                todo.pop();
+                continue;
+            }
+            boolean ready = true;
+            for (Expression<?> c : e.getChildren()) {
+                if (!nodes.containsKey(c)) {
+                    todo.push(c);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                todo.pop();
+                emit(e);
+                nodes.put(e, nodes.size());
+            }
+        }
+        return nodes.get(root);
+    }
+
+    private void emit(Expression<?> e) {
+        int self = nodes.size();
+        body = ensure(body, 2);
+        if (e instanceof Variable) {
+            Variable<?> v = (Variable<?>) e;
+            Integer idx = vars.get(v);
+            if (idx == null) {
+                typeIndex(v.getType());
+                idx = vars.size();
+                vars.put(v, idx);
+            }
+            body.put(VAR);
+            bodyVarint(idx);
+        } else if (e instanceof Constant) {
+            constant((Constant<?>) e);
+        } else if (e instanceof NumericBooleanExpression) {
+            NumericBooleanExpression n = (NumericBooleanExpression) e;
+            body.put(COMPARE);
+            body.put((byte) n.getComparator().ordinal());
+            refs(self, n.getLeft(), n.getRight());
+        } else if (e instanceof NumericCompound) {
+            NumericCompound<?> n = (NumericCompound<?>) e;
+            body.put(COMPOUND);
+            body.put((byte) n.getOperator().ordinal());
+            refs(self, n.getLeft(), n.getRight());
+        } else if (e instanceof PropositionalCompound) {
+            PropositionalCompound n = (PropositionalCompound) e;
+            body.put(PROPOSITIONAL);
+            body.put((byte) n.getOperator().ordinal());
+            refs(self, n.getLeft(), n.getRight());
+        } else if (e instanceof Negation) {
+            body.put(NOT);
+            refs(self, ((Negation) e).getNegated());
+        } else if (e instanceof UnaryMinus) {
+            body.put(UNARY_MINUS);
+            refs(self, ((UnaryMinus<?>) e).getNegated());
+        } else if (e instanceof IfThenElse) {
+            IfThenElse<?> ite = (IfThenElse<?>) e;
+            body.put(ITE);
+            refs(self, ite.getIf(), ite.getThen(), ite.getElse());
+        } else if (e instanceof CastExpression) {
+            CastExpression<?, ?> c = (CastExpression<?, ?>) e;
+            body.put(CAST);
+            body.put((byte) typeIndex(c.getCasted().getType()));
+            body = ensure(body, 1);
+            body.put((byte) typeIndex(c.getType()));
+            refs(self, c.getCasted());
+        } else {
+            throw new IllegalStateException("Cannot serialize " + e.getClass().getSimpleName());
+        }
+    }
+
+    private void constant(Constant<?> c) {
+        Object value = c.getValue();
+        if (value instanceof Boolean) {
+            body.put((Boolean) value ? TRUE : FALSE);
+            return;
+        }
+        byte type = (byte) typeIndex(c.getType());
+        if (value instanceof BigInteger) {
+            byte[] bytes = ((BigInteger) value).toByteArray();
+            body.put(BIG_NUMBER);
+            body.put(type);
+            bodyVarint(bytes.length);
+            body = ensure(body, bytes.length);
+            body.put(bytes);
+            return;
+        }
+        long l = value instanceof Character ? (Character) value : ((Number) value).longValue();
+        body.put(NUMBER);
+        body.put(type);
+        // zig-zag, so small negative values stay short
+        bodyVarint((l << 1) ^ (l >> 63));
+    }
+
+    private void refs(int self, Expression<?>... children) {
+        for (Expression<?> c : children) {
+            bodyVarint(self - nodes.get(c));
+        }
+    }
+
+    private void varint(long v) {
+        out = ensure(out, 10);
+        putVarint(out, v);
+    }
+
+    private void bodyVarint(long v) {
+        body = ensure(body, 10);
+        putVarint(body, v);
+    }
+
+    private static void putVarint(ByteBuffer buf, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buf, int n) {
+        if (buf.remaining() >= n) {
+            return buf;
+        }
+        ByteBuffer ret = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + n));
+        buf.flip();
+        ret.put(buf);
+        return ret;
+    }
+
+    private static int typeIndex(Type<?> type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Cannot serialize type " + type);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.LogicalOperator;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.types.Type;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Expression factory that hash-conses nodes: structurally equal
+ * expressions created through one instance are the same object.
+ *
+ * Since the children of a node are interned already, nodes are compared
+ * by operator and child identity, which keeps lookups cheap. Variables are
+ * interned by name and type. The table holds its expressions weakly: an
+ * expression is shared for as long as it is in use elsewhere, and its
+ * entry is dropped once it has been garbage collected. Instances are
+ * thread-safe.
+ */
+public class InterningExpressionFactory extends ExpressionFactory {
+
+    private static final class Node {
+
+        private final Object op;
+
+        private final Object a;
+
+        private final Object b;
+
+        private final Object c;
+
+        private final int hash;
+
+        Node(Object op, Object a, Object b, Object c) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.hash = ((op.hashCode() * 31 + System.identityHashCode(a)) * 31
+                    + System.identityHashCode(b)) * 31 + System.identityHashCode(c);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node n = (Node) o;
+            return op.equals(n.op) && a == n.a && b == n.b && c == n.c;
+        }
+    }
+
+    // a constant, or a variable with its name as value
+    private static final class Value {
+
+        private final Type<?> type;
+
+        private final Object value;
+
+        private final boolean variable;
+
+        Value(Type<?> type, Object value, boolean variable) {
+            this.type = type;
+            this.value = value;
+            this.variable = variable;
+        }
+
+        @Override
+        public int hashCode() {
+            return (type.hashCode() * 31 + value.hashCode()) * 31 + (variable ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Value)) {
+                return false;
+            }
+            Value v = (Value) o;
+            return variable == v.variable && type.equals(v.type) && value.equals(v.value);
+        }
+    }
+
+    private static final class Ref extends WeakReference<Expression> {
+
+        private final Object key;
+
+        Ref(Object key, Expression e, ReferenceQueue<Expression> queue) {
+            super(e, queue);
+            this.key = key;
+        }
+    }
+
+    private static final String NEGATION = "not";
+
+    private static final String UNARY_MINUS = "-";
+
+    private static final String ITE = "ite";
+
+    private final ConcurrentMap<Object, Ref> nodes = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<Expression> collected = new ReferenceQueue<>();
+
+    @Override
+    protected Variable variable(Variable v) {
+        Value key = new Value(v.getType(), v.getName(), true);
+        Expression e = get(key);
+        return e != null ? (Variable) e : (Variable) intern(key, v);
+    }
+
+    @Override
+    protected Expression constant(Type type, Object value) {
+        Value key = new Value(type, value, false);
+        Expression e = get(key);
+        return e != null ? e : intern(key, super.constant(type, value));
+    }
+
+    @Override
+    protected Expression compare(Expression l, NumericComparator cmp, Expression r) {
+        Node key = new Node(cmp, l, r, null);
+        Expression e = get(key);
+        return e != null ? e : intern(key, super.compare(l, cmp, r));
+    }
+
+    @Override
+    protected Expression compound(Expression l, NumericOperator op, Expression r) {
+        Node key = new Node(op, l, r, null);
+        Expression e = get(key);
+        return e != null ? e : intern(key, super.compound(l, op, r));
+    }
+
+    @Override
+    protected Expression propositional(Expression l, LogicalOperator op, Expression r) {
+        Node key = new Node(op, l, r, null);
+        Expression e = get(key);
+        return e != null ? e : intern(key, super.propositional(l, op, r));
+    }
+
+    @Override
+    protected Expression negation(Expression n) {
+        Node key = new Node(NEGATION, n, null, null);
+        Expression e = get(key);
+        return e != null ? e : intern(key, super.negation(n));
+    }
+
+    @Override
+    protected Expression unaryMinus(Expression n) {
+        Node key = new Node(UNARY_MINUS, n, null, null);
+        Expression e = get(key);
+        return e != null ? e : intern(key, super.unaryMinus(n));
+    }
+
+    @Override
+    protected Expression ite(Expression c, Expression t, Expression f) {
+        Node key = new Node(ITE, c, t, f);
+        Expression e = get(key);
+        return e != null ? e : intern(key, super.ite(c, t, f));
+    }
+
+    @Override
+    protected Expression cast(Expression n, Type type) {
+        // the target type is the operator
+        Node key = new Node(type, n, null, null);
+        Expression e = get(key);
+        return e != null ? e : intern(key, super.cast(n, type));
+    }
+
+    /**
+     * @return number of distinct expressions in use
+     */
+    public int size() {
+        purge();
+        return nodes.size();
+    }
+
+    /**
+     * forgets all interned expressions.
+     */
+    public void clear() {
+        nodes.clear();
+    }
+
+    private Expression get(Object key) {
+        Ref ref = nodes.get(key);
+        return ref != null ? ref.get() : null;
+    }
+
+    private Expression intern(Object key, Expression e) {
+        purge();
+        Ref ref = new Ref(key, e, collected);
+        while (true) {
+            Ref old = nodes.putIfAbsent(key, ref);
+            if (old == null) {
+                return e;
+            }
+            Expression shared = old.get();
+            if (shared != null) {
+                return shared;
+            }
+            // collected, but not purged yet
+            if (nodes.replace(key, old, ref)) {
+                return e;
+            }
+        }
+    }
+
+    private void purge() {
+        Reference<? extends Expression> r;
+        while ((r = collected.poll()) != null) {
+            nodes.remove(((Ref) r).key, r);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+
+/**
+ * One interpolant of a sequence delivered by
+ * {@link SMTInterpolSolver#iterateInterpolants(java.util.List)}: either
+ * the translated expression or the error that prevented its translation.
+ */
+public final class InterpolantResult {
+
+    private final int index;
+
+    private final Expression<Boolean> interpolant;
+
+    private final Exception error;
+
+    InterpolantResult(int index, Expression<Boolean> interpolant, Exception error) {
+        this.index = index;
+        this.interpolant = interpolant;
+        this.error = error;
+    }
+
+    /**
+     * @return position of the interpolant in the sequence, starting at 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean hasInterpolant() {
+        return interpolant != null;
+    }
+
+    /**
+     * @return the interpolant, or null if it could not be translated
+     */
+    public Expression<Boolean> getInterpolant() {
+        return interpolant;
+    }
+
+    /**
+     * @return the translation error, or null
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return index + ": " + (interpolant != null ? interpolant : error);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import gov.nasa.jpf.constraints.api.Expression;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks interpolant sequences in the background.
+ *
+ * For partitions phi_0 .. phi_n and interpolants I_0 .. I_n-1, every step
+ * I_k-1 /\ phi_k => I_k is checked, with I_-1 = true and I_n = false.
+ * Sequences are queued without blocking the caller (and dropped if the
+ * queue is full), and checked on low-priority threads with their own
+ * {@link ScriptPool}. Queued sequences are checked in batches: a batch
+ * shares one script, and each sequence declares its variables and asserts
+ * its partitions once, in a push/pop scope around its steps.
+ */
+public class InterpolantValidator {
+
+    private static final Logger logger = Logger.getLogger("constraints");
+
+    private static final class Job {
+
+        final List<Expression<Boolean>> partitions;
+
+        final List<Expression<Boolean>> interpolants;
+
+        Job(List<Expression<Boolean>> partitions, List<Expression<Boolean>> interpolants) {
+            this.partitions = partitions;
+            this.interpolants = interpolants;
+        }
+    }
+
+    private final ScriptPool pool;
+
+    private final int batchSize;
+
+    private final BlockingQueue<Job> pending;
+
+    private final ExecutorService executor;
+
+    private volatile ValidationCallback callback;
+
+    private final AtomicLong valid = new AtomicLong();
+
+    private final AtomicLong invalid = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            List<Job> batch = new ArrayList<>(batchSize);
+            pending.drainTo(batch, batchSize);
+            if (!batch.isEmpty()) {
+                validate(batch);
+            }
+        }
+    };
+
+    /**
+     * @param pool scripts used for validation; at most one per thread is
+     * used at a time
+     * @param threads number of validation threads
+     * @param batchSize maximal number of sequences checked on one script
+     * without returning it to the pool
+     * @param capacity maximal number of queued sequences
+     */
+    public InterpolantValidator(ScriptPool pool, int threads, int batchSize, int capacity) {
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.pending = new LinkedBlockingQueue<>(capacity);
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "smtinterpol-validator-" + (++count));
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * sets the receiver of failed validations. Without a callback,
+     * failures are logged.
+     */
+    public void setCallback(ValidationCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * queues a sequence for validation.
+     *
+     * @return false if the queue is full and the sequence was dropped
+     */
+    public boolean submit(List<Expression<Boolean>> partitions,
+            List<Expression<Boolean>> interpolants) {
+        Job job = new Job(partitions, interpolants);
+        if (executor.isShutdown() || !pending.offer(job)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        try {
+            executor.execute(drain);
+        } catch (RejectedExecutionException ex) {
+            // closed concurrently
+            pending.remove(job);
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of sequences found valid
+     */
+    public long getValidCount() {
+        return valid.get();
+    }
+
+    /**
+     * @return number of sequences found invalid
+     */
+    public long getInvalidCount() {
+        return invalid.get();
+    }
+
+    /**
+     * @return number of sequences that could not be checked
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return number of sequences dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of sequences waiting for validation
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * stops the validation threads once the queued sequences are checked,
+     * without waiting for them. Sequences submitted later are dropped.
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * waits until all queued sequences are checked, then stops the
+     * validation threads.
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private void validate(List<Job> batch) {
+        int next = 0;
+        while (next < batch.size()) {
+            Script s;
+            try {
+                s = pool.borrow();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                for (; next < batch.size(); next++) {
+                    failed(batch.get(next), ex);
+                }
+                return;
+            }
+            long weight = 0;
+            int first = next;
+            int[] results = new int[batch.size()];
+            RuntimeException error = null;
+            boolean ok = false;
+            try {
+                while (next < batch.size()) {
+                    Job j = batch.get(next);
+                    weight += SMTInterpolSolver.weight(j.partitions)
+                            + SMTInterpolSolver.weight(j.interpolants);
+                    s.push(1);
+                    results[next] = check(s, j);
+                    s.pop(1);
+                    next++;
+                }
+                ok = true;
+            } catch (RuntimeException ex) {
+                error = ex;
+            } finally {
+                if (ok) {
+                    pool.release(s, weight);
+                } else {
+                    // the script is in an unknown state, continue on a new one
+                    pool.discard(s);
+                }
+            }
+            // report only after the script is back in the pool
+            for (int k = first; k < next; k++) {
+                if (results[k] < 0) {
+                    valid.incrementAndGet();
+                } else {
+                    invalid(batch.get(k), results[k]);
+                }
+            }
+            if (error != null) {
+                failed(batch.get(next++), error);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first step that does not hold, or -1
+     */
+    private static int check(Script s, Job j) {
+        SMTInterpolExpressionGenerator gen = new SMTInterpolExpressionGenerator(s);
+        int n = j.partitions.size();
+        Term[] phis = new Term[n];
+        for (int k = 0; k < n; k++) {
+            phis[k] = gen.generateAssertion(j.partitions.get(k));
+        }
+        Term[] itps = new Term[n + 1];
+        itps[0] = s.term("true");
+        for (int k = 0; k < n - 1; k++) {
+            itps[k + 1] = gen.generateAssertion(j.interpolants.get(k));
+        }
+        itps[n] = s.term("false");
+
+        for (int k = 0; k < n; k++) {
+            s.push(1);
+            s.assertTerm(itps[k]);
+            s.assertTerm(phis[k]);
+            s.assertTerm(s.term("not", itps[k + 1]));
+            Script.LBool res = s.checkSat();
+            s.pop(1);
+            if (res == Script.LBool.UNKNOWN) {
+                throw new IllegalStateException("Validation of step " + k
+                        + " returned unknown: " + s.getInfo(":reason-unknown"));
+            }
+            if (res == Script.LBool.SAT) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    private void invalid(Job j, int index) {
+        invalid.incrementAndGet();
+        ValidationCallback cb = callback;
+        if (cb != null) {
+            try {
+                cb.invalid(j.partitions, j.interpolants, index);
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Validation callback failed", ex);
+            }
+        } else {
+            logger.severe("Invalid interpolant " + index + " in " + j.interpolants
+                    + " for " + j.partitions);
+        }
+    }
+
+    private void failed(Job j, Throwable error) {
+        failed.incrementAndGet();
+        ValidationCallback cb = callback;
+        if (cb != null) {
+            try {
+                cb.failed(j.partitions, j.interpolants, error);
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Validation callback failed", ex);
+            }
+        } else {
+            logger.log(Level.WARNING, "Cannot validate interpolants", error);
+        }
+    }
+}
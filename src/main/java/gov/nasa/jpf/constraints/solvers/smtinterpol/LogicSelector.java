@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.UnaryMinus;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Picks the cheapest logic that can express a set of formulas:
+ * QF_UF for purely propositional formulas, QF_IDL if every arithmetic
+ * atom is a difference constraint (x - y ~ c or x ~ c), QF_LIA otherwise.
+ */
+public final class LogicSelector {
+
+    private LogicSelector() {
+    }
+
+    public static Logics select(List<? extends Expression<?>> exprsn) {
+        boolean arith = false;
+        Set<Expression<?>> seen = Collections.newSetFromMap(
+                new IdentityHashMap<Expression<?>, Boolean>());
+        Deque<Expression<?>> todo = new ArrayDeque<>();
+        todo.addAll(exprsn);
+        while (!todo.isEmpty()) {
+            Expression<?> e = todo.pop();
+            if (!seen.add(e)) {
+                continue;
+            }
+            if (e instanceof NumericBooleanExpression) {
+                NumericBooleanExpression n = (NumericBooleanExpression) e;
+                if (!isDifference(n.getLeft(), n.getRight())) {
+                    return Logics.QF_LIA;
+                }
+                arith = true;
+            } else if (e instanceof Variable) {
+                arith |= !(e.getType() instanceof BuiltinTypes.BoolType);
+            } else {
+                for (Expression<?> c : e.getChildren()) {
+                    todo.push(c);
+                }
+            }
+        }
+        return arith ? Logics.QF_IDL : Logics.QF_UF;
+    }
+
+    private static boolean isDifference(Expression<?> left, Expression<?> right) {
+        Map<String, Integer> coeffs = new HashMap<>();
+        if (!collect(left, 1, coeffs) || !collect(right, -1, coeffs)) {
+            return false;
+        }
+        int n = 0;
+        int sum = 0;
+        for (int c : coeffs.values()) {
+            if (c == 0) {
+                continue;
+            }
+            if (Math.abs(c) != 1) {
+                return false;
+            }
+            n++;
+            sum += c;
+        }
+        return n <= 1 || (n == 2 && sum == 0);
+    }
+
+    private static boolean collect(Expression<?> e, int sign, Map<String, Integer> coeffs) {
+        if (e instanceof Constant) {
+            return true;
+        }
+        if (e instanceof Variable) {
+            String name = ((Variable<?>) e).getName();
+            Integer old = coeffs.get(name);
+            coeffs.put(name, (old == null ? 0 : old) + sign);
+            return true;
+        }
+        if (e instanceof UnaryMinus) {
+            return collect(((UnaryMinus<?>) e).getNegated(), -sign, coeffs);
+        }
+        if (e instanceof NumericCompound) {
+            NumericCompound<?> n = (NumericCompound<?>) e;
+            switch (n.getOperator()) {
+                case PLUS:
+                    return collect(n.getLeft(), sign, coeffs)
+                            && collect(n.getRight(), sign, coeffs);
+                case MINUS:
+                    return collect(n.getLeft(), sign, coeffs)
+                            && collect(n.getRight(), -sign, coeffs);
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+}
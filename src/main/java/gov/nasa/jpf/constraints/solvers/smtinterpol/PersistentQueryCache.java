@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only on-disk cache of interpolation results.
+ *
+ * Entries are keyed by the SHA-256 digest of the canonical SMT-LIB form of
+ * a query and hold whether the query was satisfiable and, if not, the
+ * interpolants as SMT-LIB terms. Appends are serialized across processes
+ * by an exclusive file lock; records written by other processes are picked
+ * up on the next miss. The file never grows beyond its size bound: once it
+ * is full, new results are no longer stored.
+ *
+ * Every record carries its length and a CRC-32 of its contents. A record
+ * left incomplete or corrupt by a crashed writer ends the valid part of
+ * the file; it is ignored by readers and cut off by the next writer.
+ */
+public class PersistentQueryCache {
+
+    private static final Logger logger = Logger.getLogger("constraints");
+
+    private static final Map<String, PersistentQueryCache> open = new HashMap<>();
+
+    private static final long MAGIC = 0x534d5449434e3032L;
+
+    private static final int HEADER = 8;
+
+    // length and checksum
+    private static final int RECORD_HEADER = 8;
+
+    private static final int DIGEST = 32;
+
+    // smallest record: digest, status, and number of interpolants
+    private static final int MIN_LENGTH = DIGEST + 1 + 4;
+
+    // smaller regions are read instead of mapped
+    private static final int MAP_THRESHOLD = 1 << 20;
+
+    static final byte SAT = 0;
+
+    static final byte UNSAT = 1;
+
+    /**
+     * A cached result.
+     */
+    public static class Entry {
+
+        private final boolean unsat;
+
+        private final List<String> interpolants;
+
+        Entry(boolean unsat, List<String> interpolants) {
+            this.unsat = unsat;
+            this.interpolants = interpolants;
+        }
+
+        public boolean isUnsat() {
+            return unsat;
+        }
+
+        /**
+         * @return the interpolants as SMT-LIB terms
+         */
+        public List<String> getInterpolants() {
+            return interpolants;
+        }
+    }
+
+    private static final class Key {
+
+        private final byte[] digest;
+
+        private final int hash;
+
+        Key(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(digest, ((Key) o).digest);
+        }
+    }
+
+    private final FileChannel channel;
+
+    private final long maxSize;
+
+    private final Map<Key, Long> index = new ConcurrentHashMap<>();
+
+    private long indexed = HEADER;
+
+    // mapping of a prefix of the indexed records; it is renewed when the
+    // records behind it outgrow it, so the file is mapped a logarithmic
+    // number of times
+    private ByteBuffer view;
+
+    private boolean full = false;
+
+    // separate instances of one file behave like separate processes
+    PersistentQueryCache(File file, long maxSize) throws IOException {
+        // records are addressed through a single mapping
+        this.maxSize = Math.min(maxSize, Integer.MAX_VALUE);
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        try (FileLock lock = channel.lock()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            if (channel.size() == 0) {
+                header.putLong(MAGIC).flip();
+                channel.write(header, 0);
+            } else {
+                channel.read(header, 0);
+                header.flip();
+                if (header.remaining() < HEADER || header.getLong() != MAGIC) {
+                    throw new IOException("Not a query cache: " + file);
+                }
+            }
+            refresh(true);
+        }
+    }
+
+    /**
+     * opens a cache file. Solvers in one JVM that use the same file share
+     * one instance.
+     */
+    public static PersistentQueryCache open(File file, long maxSize) throws IOException {
+        String path = file.getCanonicalPath();
+        synchronized (open) {
+            PersistentQueryCache cache = open.get(path);
+            if (cache == null) {
+                cache = new PersistentQueryCache(file, maxSize);
+                open.put(path, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * computes the key of a query from its canonical SMT-LIB form:
+     * declarations sorted by name followed by the partitions in order.
+     */
+    public static byte[] key(List<Expression<Boolean>> exprsn, Set<Variable<?>> vars) {
+        List<Variable<?>> sorted = new ArrayList<>(vars);
+        Collections.sort(sorted, new Comparator<Variable<?>>() {
+            @Override
+            public int compare(Variable<?> a, Variable<?> b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        StringBuilder sb = new StringBuilder();
+        for (Variable<?> v : sorted) {
+            sb.append("(declare-fun ").append(QueryRecorder.quote(v.getName()))
+                    .append(" () ").append(v.getType().getName()).append(")\n");
+        }
+        for (Expression<Boolean> e : exprsn) {
+            sb.append(SMTLibPrinter.print(e)).append('\n');
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(
+                    sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @return the cached result or null
+     */
+    public Entry lookup(byte[] key) {
+        Key k = new Key(key);
+        Long offset = index.get(k);
+        try {
+            if (offset == null) {
+                synchronized (this) {
+                    try (FileLock lock = channel.lock(0, Long.MAX_VALUE, true)) {
+                        refresh(false);
+                    }
+                }
+                offset = index.get(k);
+                if (offset == null) {
+                    return null;
+                }
+            }
+            return read(offset);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot read query cache", ex);
+            return null;
+        }
+    }
+
+    public void store(byte[] key, boolean unsat, List<String> interpolants) {
+        byte[][] encoded = new byte[interpolants.size()][];
+        int length = MIN_LENGTH;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = interpolants.get(i).getBytes(StandardCharsets.UTF_8);
+            length += 4 + encoded[i].length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + length);
+        record.putInt(length).putInt(0).put(key).put(unsat ? UNSAT : SAT).putInt(encoded.length);
+        for (byte[] b : encoded) {
+            record.putInt(b.length).put(b);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+
+        synchronized (this) {
+            if (full) {
+                return;
+            }
+            try (FileLock lock = channel.lock()) {
+                refresh(true);
+                if (index.containsKey(new Key(key))) {
+                    return;
+                }
+                long end = channel.size();
+                if (end + record.remaining() > maxSize) {
+                    full = true;
+                    logger.info("Query cache is full, no longer storing results");
+                    return;
+                }
+                while (record.hasRemaining()) {
+                    channel.write(record, end + record.position());
+                }
+                refresh(true);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Cannot write query cache", ex);
+            }
+        }
+    }
+
+    /**
+     * indexes the records appended since the last refresh. The caller holds
+     * a file lock; with an exclusive lock, an invalid tail is truncated.
+     */
+    private synchronized void refresh(boolean exclusive) throws IOException {
+        long size = channel.size();
+        if (size <= indexed) {
+            return;
+        }
+        ByteBuffer buf = region(indexed, size);
+        CRC32 crc = new CRC32();
+        while (buf.remaining() >= RECORD_HEADER) {
+            int start = buf.position();
+            int length = buf.getInt();
+            int checksum = buf.getInt();
+            if (length < MIN_LENGTH || length > buf.remaining()) {
+                buf.position(start);
+                break;
+            }
+            byte[] record = new byte[length];
+            buf.get(record);
+            crc.reset();
+            crc.update(record, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                buf.position(start);
+                break;
+            }
+            index.put(new Key(Arrays.copyOf(record, DIGEST)), indexed + start);
+        }
+        indexed += buf.position();
+        if (indexed < size && exclusive) {
+            // nobody else is writing: the tail is left from a crashed writer
+            logger.warning("Discarding " + (size - indexed)
+                    + " bytes of incomplete records from query cache");
+            channel.truncate(indexed);
+        }
+        if (view == null || indexed - view.limit() > view.limit()) {
+            view = channel.map(FileChannel.MapMode.READ_ONLY, 0, indexed);
+        }
+    }
+
+    private Entry read(long offset) throws IOException {
+        ByteBuffer buf;
+        synchronized (this) {
+            buf = view.duplicate();
+        }
+        int pos = (int) offset;
+        if (offset >= buf.limit()) {
+            // indexed after the view was mapped
+            int length = region(offset, offset + 4).getInt();
+            buf = region(offset, offset + RECORD_HEADER + length);
+            pos = 0;
+        }
+        buf.position(pos + RECORD_HEADER + DIGEST);
+        boolean unsat = buf.get() == UNSAT;
+        int n = buf.getInt();
+        List<String> interpolants = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            byte[] b = new byte[buf.getInt()];
+            buf.get(b);
+            interpolants.add(new String(b, StandardCharsets.UTF_8));
+        }
+        return new Entry(unsat, interpolants);
+    }
+
+    private ByteBuffer region(long from, long to) throws IOException {
+        if (to - from >= MAP_THRESHOLD) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) (to - from));
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, from + buf.position()) < 0) {
+                throw new EOFException("Query cache truncated");
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import gov.nasa.jpf.constraints.types.IntegerType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records interpolation queries as standalone SMT-LIB2 scripts.
+ *
+ * The calling thread prints the terms while it still owns the script they
+ * belong to and enqueues the text; file output happens on a daemon writer
+ * thread. When the queue is full, queries are dropped rather than blocking
+ * the solver. Queries still queued when the JVM exits are written by a
+ * shutdown hook.
+ *
+ * Solvers in one JVM that record to the same directory share one recorder,
+ * see {@link #open(File, double, int)}. Trace names contain the process id
+ * and a per-process recorder number, and existing files are never
+ * overwritten, so recorders in different processes can share one
+ * directory, too.
+ */
+public class QueryRecorder {
+
+    private static final Logger logger = Logger.getLogger("constraints");
+
+    private static final AtomicLong recorderIds = new AtomicLong();
+
+    private static final Map<String, QueryRecorder> open = new HashMap<>();
+
+    private static final String PID =
+            ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+
+    private final File directory;
+
+    private final String path;
+
+    private final double sampleRate;
+
+    private final BlockingQueue<Query> queue;
+
+    private final Thread writer;
+
+    private final Thread hook;
+
+    private final String prefix;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    // number of solvers sharing this recorder, guarded by open
+    private int users = 0;
+
+    QueryRecorder(File directory, String path, double sampleRate, int capacity) {
+        this.directory = directory;
+        this.path = path;
+        this.sampleRate = sampleRate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        long id = recorderIds.incrementAndGet();
+        this.prefix = "query-" + PID + "-" + id + "-";
+        this.directory.mkdirs();
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "smtinterpol-recorder-" + id);
+        this.writer.setDaemon(true);
+        this.writer.start();
+        this.hook = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                finish();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    /**
+     * opens the recorder for a directory. Solvers in one JVM that use the
+     * same directory share one instance, configured by the first of them.
+     * Every call must be matched by a call to {@link #close()}.
+     */
+    public static QueryRecorder open(File directory, double sampleRate, int capacity)
+            throws IOException {
+        String path = directory.getCanonicalPath();
+        synchronized (open) {
+            QueryRecorder recorder = open.get(path);
+            if (recorder == null) {
+                recorder = new QueryRecorder(directory, path, sampleRate, capacity);
+                open.put(path, recorder);
+            }
+            recorder.users++;
+            return recorder;
+        }
+    }
+
+    /**
+     * @return true if the next query should be recorded
+     */
+    public boolean sample() {
+        if (closed) {
+            return false;
+        }
+        return sampleRate >= 1.0
+                || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * enqueues a query. Must be called by the thread using the script the
+     * terms belong to, as printing a term modifies the script's theory.
+     */
+    public void record(Logics logic, Set<Variable<?>> vars,
+            List<String> names, List<Term> terms) {
+        List<String> text = new ArrayList<>(terms.size());
+        for (Term t : terms) {
+            text.add(t.toString());
+        }
+        Query q = new Query(logic, new ArrayList<>(vars),
+                new ArrayList<>(names), text);
+        if (!queue.offer(q)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of queries dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * releases the recorder. When the last solver sharing it closes it,
+     * pending queries are written and the writer thread stops.
+     */
+    public void close() {
+        synchronized (open) {
+            if (users == 0 || --users > 0) {
+                return;
+            }
+            open.remove(path);
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException ex) {
+            // already shutting down, the hook runs anyway
+        }
+        finish();
+    }
+
+    private void finish() {
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        while (!closed || !queue.isEmpty()) {
+            Query q;
+            try {
+                q = closed ? queue.poll() : queue.take();
+            } catch (InterruptedException ex) {
+                continue;
+            }
+            if (q == null) {
+                break;
+            }
+            File f = null;
+            try {
+                // never overwrite traces, e.g., from an earlier run with the same pid
+                do {
+                    f = new File(directory, prefix + sequence.incrementAndGet() + ".smt2");
+                } while (!f.createNewFile());
+                try (Writer out = new OutputStreamWriter(
+                        new FileOutputStream(f), StandardCharsets.UTF_8)) {
+                    write(q, out);
+                }
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "Cannot record query to " + f, ex);
+            }
+        }
+    }
+
+    static void write(Query q, Writer out) throws IOException {
+        out.append("(set-option :produce-interpolants true)\n");
+        out.append("(set-logic ").append(q.logic.name()).append(")\n");
+        for (Variable<?> v : q.vars) {
+            writeDeclaration(v, out);
+        }
+        for (int i = 0; i < q.terms.size(); i++) {
+            out.append("(assert (! ").append(q.terms.get(i))
+                    .append(" :named ").append(q.names.get(i)).append("))\n");
+        }
+        out.append("(check-sat)\n");
+        out.append("(get-interpolants");
+        for (String n : q.names) {
+            out.append(' ').append(n);
+        }
+        out.append(")\n");
+    }
+
+    private static void writeDeclaration(Variable<?> v, Writer out)
+            throws IOException {
+        String name = quote(v.getName());
+        if (v.getType() instanceof BuiltinTypes.BoolType) {
+            out.append("(declare-fun ").append(name).append(" () Bool)\n");
+            return;
+        }
+        out.append("(declare-fun ").append(name).append(" () Int)\n");
+        IntegerType<?> type = (IntegerType<?>) v.getType();
+        if (type.getMinInt() != null) {
+            out.append("(assert (>= ").append(name).append(' ')
+                    .append(numeral(type.getMinInt())).append("))\n");
+        }
+        if (type.getMaxInt() != null) {
+            out.append("(assert (<= ").append(name).append(' ')
+                    .append(numeral(type.getMaxInt())).append("))\n");
+        }
+    }
+
+    static String numeral(BigInteger n) {
+        return n.signum() < 0 ? "(- " + n.negate() + ")" : n.toString();
+    }
+
+    /**
+     * @return name as SMT-LIB symbol, quoted unless it is a simple symbol
+     * (like SMTInterpol prints it)
+     */
+    static String quote(String name) {
+        if (name.isEmpty() || (name.charAt(0) >= '0' && name.charAt(0) <= '9')) {
+            return "|" + name + "|";
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean simple = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9') || "~!@$%^&*_-+=<>.?/".indexOf(c) >= 0;
+            if (!simple) {
+                return "|" + name + "|";
+            }
+        }
+        return name;
+    }
+
+    static class Query {
+
+        final Logics logic;
+        final List<Variable<?>> vars;
+        final List<String> names;
+        final List<String> terms;
+
+        Query(Logics logic, List<Variable<?>> vars,
+                List<String> names, List<String> terms) {
+            this.logic = logic;
+            this.vars = vars;
+            this.names = names;
+            this.terms = terms;
+        }
+    }
+}
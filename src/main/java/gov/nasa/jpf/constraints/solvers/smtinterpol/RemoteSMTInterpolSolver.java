@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.ConstraintSolver;
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.InterpolationSolver;
+import gov.nasa.jpf.constraints.api.Valuation;
+import java.util.List;
+
+/**
+ * Interpolation solver that runs SMTInterpol in a {@link WorkerPool} of
+ * separate processes, isolating heap and GC from the calling JVM.
+ */
+public class RemoteSMTInterpolSolver extends ConstraintSolver implements InterpolationSolver {
+
+    private final WorkerPool pool;
+
+    public RemoteSMTInterpolSolver(WorkerPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public Result solve(Expression<Boolean> f, Valuation result) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public List<Expression<Boolean>> getInterpolants(List<Expression<Boolean>> exprsn) {
+        try {
+            return pool.getInterpolants(exprsn);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * terminates the worker processes, also for other solvers sharing the
+     * pool.
+     */
+    public void close() {
+        pool.close();
+    }
+}
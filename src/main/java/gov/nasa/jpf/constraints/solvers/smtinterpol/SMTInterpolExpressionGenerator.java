@@ -25,6 +25,7 @@ import gov.nasa.jpf.constraints.expressions.BitvectorExpression;
 import gov.nasa.jpf.constraints.expressions.BitvectorNegation;
 import gov.nasa.jpf.constraints.expressions.CastExpression;
 import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.IfThenElse;
 import gov.nasa.jpf.constraints.expressions.Negation;
 import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
 import gov.nasa.jpf.constraints.expressions.NumericComparator;
@@ -77,11 +78,8 @@ public class SMTInterpolExpressionGenerator extends AbstractExpressionVisitor<Te
             return script.numeral(c.getValue().toString());
         }
         if (type instanceof BuiltinTypes.BoolType) {
-            Constant zero = new Constant(BuiltinTypes.INTEGER, 0);
-            Expression<Boolean> taut = new NumericBooleanExpression(
-                    zero, NumericComparator.EQ, zero);
-            
-            return ((Boolean)c.getValue()) ? visit(taut) : visit(new Negation(taut));
+            // core symbols, available in every logic (also without arithmetic)
+            return script.term(((Boolean)c.getValue()) ? "true" : "false");
         }
         throw new IllegalStateException("Cannot handle consts of type " + type);
     }
@@ -136,11 +134,47 @@ public class SMTInterpolExpressionGenerator extends AbstractExpressionVisitor<Te
         Expression<F> casted = cast.getCasted();
         Type<F> ft = casted.getType();
         Type<E> tt = cast.getType();
-        throw new IllegalStateException("Cannot handle cast from " + ft + " to " + tt);
+        if (!(ft instanceof IntegerType) || !(tt instanceof IntegerType)) {
+            throw new IllegalStateException("Cannot handle cast from " + ft + " to " + tt);
+        }
+        Term t = visit(casted, null);
+        IntegerType<?> to = (IntegerType<?>) tt;
+        if (!narrows((IntegerType<?>) ft, to)) {
+            return t;
+        }
+        // wrap around like Java: ((x - min) mod size) + min
+        BigInteger min = to.getMinInt();
+        BigInteger size = to.getMaxInt().subtract(min).add(BigInteger.ONE);
+        if (min.signum() != 0) {
+            t = script.term("+", t, script.numeral(min.negate()));
+        }
+        t = script.term("mod", t, script.numeral(size));
+        if (min.signum() != 0) {
+            t = script.term("-", t, script.numeral(min.negate()));
+        }
+        return t;
     }
 
-    /* (non-Javadoc)
-     * @see gov.nasa.jpf.constraints.expressions.AbstractExpressionVisitor#visit(gov.nasa.jpf.constraints.expressions.NumericCompound, java.lang.Object)
+    /**
+     * @return true if a value of type from may lie outside of the range of
+     * type to
+     */
+    static boolean narrows(IntegerType<?> from, IntegerType<?> to) {
+        BigInteger min = to.getMinInt();
+        BigInteger max = to.getMaxInt();
+        if (min == null || max == null) {
+            return false;
+        }
+        return from.getMinInt() == null || from.getMaxInt() == null
+                || from.getMinInt().compareTo(min) < 0
+                || from.getMaxInt().compareTo(max) > 0;
+    }
+
+    /**
+     * DIV and REM truncate towards zero like Java, while SMT-LIB div and
+     * mod are Euclidean (the remainder is never negative). They are
+     * translated as a / b = (ite (>= a 0) (div a b) (- (div (- a) b))) and
+     * a % b = a - b * (a / b).
      */
     @Override
     public <E> Term visit(NumericCompound<E> n, Void data) {
@@ -157,14 +191,21 @@ public class SMTInterpolExpressionGenerator extends AbstractExpressionVisitor<Te
             case MUL:
                 return script.term("*", left, right);
             case DIV:
-                return script.term("/", left, right);
+                return truncatingDiv(left, right);
             case REM:
-                return script.term("%", left, right);
+                return script.term("-", left,
+                        script.term("*", right, truncatingDiv(left, right)));
             default:
                 throw new IllegalArgumentException("Cannot handle numeric operator " + op);
         }
     }
 
+    private Term truncatingDiv(Term left, Term right) {
+        return script.term("ite", script.term(">=", left, script.numeral("0")),
+                script.term("div", left, right),
+                script.term("-", script.term("div", script.term("-", left), right)));
+    }
+
     /* (non-Javadoc)
      * @see gov.nasa.jpf.constraints.expressions.AbstractExpressionVisitor#visit(gov.nasa.jpf.constraints.expressions.PropositionalCompound, java.lang.Object)
      */
@@ -181,10 +222,10 @@ public class SMTInterpolExpressionGenerator extends AbstractExpressionVisitor<Te
                 return script.term("or", left, right);
             case EQUIV:
               return script.term("=", left, right);
-//      case IMPLY:
-//        return script.term("+", left, right);
-//      case XOR:
-//        return script.term("+", left, right);
+            case IMPLY:
+                return script.term("=>", left, right);
+            case XOR:
+                return script.term("xor", left, right);
             default:
                 throw new IllegalStateException("Cannot handle propositional operator " + n.getOperator());
 
@@ -200,6 +241,17 @@ public class SMTInterpolExpressionGenerator extends AbstractExpressionVisitor<Te
         return script.term("-", negated);
     }
 
+    /* (non-Javadoc)
+     * @see gov.nasa.jpf.constraints.expressions.AbstractExpressionVisitor#visit(gov.nasa.jpf.constraints.expressions.IfThenElse, java.lang.Object)
+     */
+    @Override
+    public <E> Term visit(IfThenElse<E> n, Void data) {
+        Term cond = visit(n.getIf(), null);
+        Term then = visit(n.getThen(), null);
+        Term other = visit(n.getElse(), null);
+        return script.term("ite", cond, then, other);
+    }
+
     /* (non-Javadoc)
      * @see gov.nasa.jpf.constraints.expressions.AbstractExpressionVisitor#visit(gov.nasa.jpf.constraints.expressions.QuantifierExpression, java.lang.Object)
      */
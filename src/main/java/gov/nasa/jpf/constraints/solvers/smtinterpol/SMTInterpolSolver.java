@@ -17,20 +17,261 @@ package gov.nasa.jpf.constraints.solvers.smtinterpol;
 
 import de.uni_freiburg.informatik.ultimate.logic.Annotation;
 import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.SMTLIBException;
 import de.uni_freiburg.informatik.ultimate.logic.Script;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 import gov.nasa.jpf.constraints.api.ConstraintSolver;
 import gov.nasa.jpf.constraints.api.Expression;
 import gov.nasa.jpf.constraints.api.InterpolationSolver;
 import gov.nasa.jpf.constraints.api.Valuation;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.LogicalOperator;
+import gov.nasa.jpf.constraints.expressions.PropositionalCompound;
 import gov.nasa.jpf.constraints.solvers.smtinterpol.exception.TermParserException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Interpolating solver based on SMTInterpol.
+ *
+ * Instances are thread-safe and meant to be shared: each query owns a
+ * script from the {@link ScriptPool} for its duration, all per-query state
+ * (expression generator, parser) is confined to the calling thread, and
+ * shared state is either immutable, concurrent, or atomic.
+ */
 public class SMTInterpolSolver extends ConstraintSolver implements InterpolationSolver {
 
     private static final Logger logger = Logger.getLogger("constraints");
+
+    private final QueryRecorder recorder;
+
+    private final ConcurrentMap<Logics, ScriptPool> pools = new ConcurrentHashMap<>();
+
+    private final int poolSize;
+
+    private final long timeout;
+
+    // null for automatic selection
+    private final Logics fixedLogic;
+
+    private final boolean reduce;
+
+    private final long maxScriptWeight;
+
+    private final int maxScriptUses;
+
+    private ExecutorService executor;
+
+    private final AtomicLong queries = new AtomicLong();
+
+    private final AtomicLong unsat = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final PersistentQueryCache cache;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private final ExpressionFactory factory;
+
+    private volatile long warmUpTime = -1;
+
+    private final InterpolantValidator validator;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public SMTInterpolSolver() {
+        this(new Properties());
+    }
+
+    public SMTInterpolSolver(Properties config) {
+        QueryRecorder r = null;
+        String traceDir = config.getProperty("smtinterpol.trace.dir");
+        if (traceDir != null) {
+            try {
+                r = QueryRecorder.open(new File(traceDir),
+                        Double.parseDouble(config.getProperty("smtinterpol.trace.sample", "1.0")),
+                        Integer.parseInt(config.getProperty("smtinterpol.trace.queue", "64")));
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Cannot record queries to " + traceDir, ex);
+            }
+        }
+        this.recorder = r;
+        this.poolSize = Integer.parseInt(config.getProperty("smtinterpol.pool.size",
+                "" + Runtime.getRuntime().availableProcessors()));
+        this.timeout = Long.parseLong(config.getProperty("smtinterpol.timeout", "0"));
+        String logic = config.getProperty("smtinterpol.logic", "auto");
+        this.fixedLogic = logic.equals("auto") ? null : Logics.valueOf(logic);
+        this.reduce = Boolean.parseBoolean(config.getProperty("smtinterpol.core.reduce", "false"));
+        this.maxScriptWeight = Long.parseLong(
+                config.getProperty("smtinterpol.pool.recycle.weight", "1000000"));
+        this.maxScriptUses = Integer.parseInt(
+                config.getProperty("smtinterpol.pool.recycle.uses", "0"));
+
+        PersistentQueryCache c = null;
+        String cacheFile = config.getProperty("smtinterpol.cache.file");
+        if (cacheFile != null) {
+            try {
+                c = PersistentQueryCache.open(new File(cacheFile), Long.parseLong(
+                        config.getProperty("smtinterpol.cache.size", "" + (256L << 20))));
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Cannot open query cache " + cacheFile, ex);
+            }
+        }
+        this.cache = c;
+
+        this.factory = Boolean.parseBoolean(config.getProperty("smtinterpol.intern", "false"))
+                ? new InterningExpressionFactory() : new ExpressionFactory();
+
+        if (Boolean.parseBoolean(config.getProperty("smtinterpol.validate", "false"))) {
+            int threads = Integer.parseInt(
+                    config.getProperty("smtinterpol.validate.threads", "1"));
+            this.validator = new InterpolantValidator(
+                    new ScriptPool(Logics.QF_LIA, threads, timeout, false,
+                            maxScriptWeight, maxScriptUses),
+                    threads,
+                    Integer.parseInt(config.getProperty("smtinterpol.validate.batch", "16")),
+                    Integer.parseInt(config.getProperty("smtinterpol.validate.queue", "1024")));
+        } else {
+            this.validator = null;
+        }
+    }
+
+    /**
+     * @return the query recorder, or null if recording is disabled
+     */
+    public QueryRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * @return number of interpolation queries started
+     */
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    /**
+     * @return number of interpolation queries that were unsat
+     */
+    public long getUnsatCount() {
+        return unsat.get();
+    }
+
+    /**
+     * @return number of interpolation queries that failed with an error
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * @return number of interpolation queries answered by the persistent cache
+     */
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return number of queries that failed in the selected logic and were
+     * run again in QF_LIA
+     */
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    /**
+     * @return the factory used for translating interpolants back into
+     * expressions; an {@link InterningExpressionFactory} if
+     * smtinterpol.intern is set
+     */
+    public ExpressionFactory getExpressionFactory() {
+        return factory;
+    }
+
+    /**
+     * @return approximate weight of all pooled scripts, in expression nodes
+     * asserted since their creation or last reset
+     */
+    public long getScriptWeight() {
+        long ret = 0;
+        for (ScriptPool pool : pools.values()) {
+            ret += pool.getWeight();
+        }
+        return ret;
+    }
+
+    /**
+     * @return number of pooled scripts reset for exceeding
+     * smtinterpol.pool.recycle.weight or smtinterpol.pool.recycle.uses
+     */
+    public long getRecycledCount() {
+        long ret = 0;
+        for (ScriptPool pool : pools.values()) {
+            ret += pool.getRecycledCount();
+        }
+        return ret;
+    }
+
+    /**
+     * @return the validator checking all interpolants returned by
+     * {@link #getInterpolants(List)}, or null if smtinterpol.validate is
+     * not set
+     */
+    public InterpolantValidator getValidator() {
+        return validator;
+    }
+
+    /**
+     * @return time taken by {@link #warmUp()} in milliseconds, or -1 if no
+     * warm-up has completed
+     */
+    public long getWarmUpTime() {
+        return warmUpTime;
+    }
+
+    /**
+     * releases the query recorder, if any, and stops the validator after
+     * it has checked the queued interpolants. The recorder writes all
+     * queued traces and stops once every solver sharing it is closed.
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        if (validator != null) {
+            validator.close();
+        }
+    }
     
     @Override
     public Result solve(Expression<Boolean> f, Valuation result) {
@@ -39,55 +280,641 @@ public class SMTInterpolSolver extends ConstraintSolver implements Interpolation
 
     @Override
     public List<Expression<Boolean>> getInterpolants(List<Expression<Boolean>> exprsn) {
-        
-        Script s = new de.uni_freiburg.informatik.ultimate.
-                smtinterpol.smtlib2.SMTInterpol();
-        
-        SMTInterpolExpressionGenerator gen = 
-                new SMTInterpolExpressionGenerator(s);
-        ArrayList<String> names = new ArrayList<>();
+        List<Expression<Boolean>> ret = collect(iterateInterpolants(exprsn));
+        if (ret != null && validator != null) {
+            // the validator checks them later, callers may modify the lists
+            validator.submit(new ArrayList<>(exprsn), new ArrayList<>(ret));
+        }
+        return ret;
+    }
+
+    /**
+     * @return all interpolants of it, or null if it is null or an
+     * interpolant could not be translated
+     */
+    static List<Expression<Boolean>> collect(Iterator<InterpolantResult> it) {
+        if (it == null) {
+            return null;
+        }
+        ArrayList<Expression<Boolean>> ret = new ArrayList<>();
+        while (it.hasNext()) {
+            InterpolantResult r = it.next();
+            if (!r.hasInterpolant()) {
+                logger.severe(r.getError().getMessage());
+                return null;
+            }
+            ret.add(r.getInterpolant());
+        }
+        return ret;
+    }
+
+    /**
+     * computes interpolants like {@link #getInterpolants(List)}, but
+     * translates each interpolant only when it is requested from the
+     * returned iterator. A failed translation is reported in the result for
+     * that interpolant and does not affect the others. The interpolants are
+     * printed before the script goes back to the pool; the text of an
+     * interpolant is released as soon as it is translated unless it is
+     * cached.
+     *
+     * @return an iterator over the interpolants, or null if the formulas
+     * are satisfiable or the solver could not decide
+     */
+    public Iterator<InterpolantResult> iterateInterpolants(
+            final List<Expression<Boolean>> exprsn) {
+        queries.incrementAndGet();
+        byte[] key = null;
+        if (cache != null) {
+            Set<Variable<?>> vars = new HashSet<>();
+            for (Expression<Boolean> e : exprsn) {
+                e.collectFreeVariables(vars);
+            }
+            key = PersistentQueryCache.key(exprsn, vars);
+            PersistentQueryCache.Entry hit = cache.lookup(key);
+            if (hit != null) {
+                cacheHits.incrementAndGet();
+                if (!hit.isUnsat()) {
+                    return null;
+                }
+                unsat.incrementAndGet();
+                return new TextInterpolants(
+                        hit.getInterpolants().toArray(new String[0]), vars, null);
+            }
+        }
+
+        Outcome outcome;
+        try {
+            outcome = execute(selectLogic(exprsn), weight(exprsn), new Task<Outcome>() {
+                @Override
+                public Outcome run(Script s, Logics logic) {
+                    return interpolate(s, logic,
+                            new SMTInterpolExpressionGenerator(s), exprsn, true);
+                }
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (outcome.status == Script.LBool.SAT && key != null) {
+            cache.store(key, false, Collections.<String>emptyList());
+        }
+        if (outcome.status != Script.LBool.UNSAT) {
+            return null;
+        }
+        unsat.incrementAndGet();
+        return new TextInterpolants(outcome.interpolants, outcome.vars, key);
+    }
+
+    public Future<List<Expression<Boolean>>> getInterpolantsAsync(
+            List<Expression<Boolean>> exprsn) {
+        return getInterpolantsAsync(exprsn, null);
+    }
+
+    /**
+     * computes interpolants on the executor of this solver.
+     *
+     * @param callback notified on completion, may be null
+     */
+    public Future<List<Expression<Boolean>>> getInterpolantsAsync(
+            final List<Expression<Boolean>> exprsn,
+            final SolverCallback<List<Expression<Boolean>>> callback) {
+        return submit(new Callable<List<Expression<Boolean>>>() {
+            @Override
+            public List<Expression<Boolean>> call() {
+                return getInterpolants(exprsn);
+            }
+        }, callback);
+    }
+
+    /**
+     * warms up the solver in the background: fills the script pools of the
+     * logics used by typical queries and runs a few representative
+     * interpolation queries, so that class loading and JIT compilation are
+     * done before the first real query. Warm-up queries are not counted,
+     * cached, or recorded. Failures are logged.
+     *
+     * @return the time taken in milliseconds
+     */
+    public Future<Long> warmUp() {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws InterruptedException {
+                long start = System.nanoTime();
+                Set<Logics> logics = new HashSet<>();
+                logics.add(fixedLogic != null ? fixedLogic : Logics.QF_LIA);
+                for (final List<Expression<Boolean>> q : WarmUp.queries()) {
+                    Logics logic = selectLogic(q);
+                    logics.add(logic);
+                    Outcome outcome = execute(logic, weight(q), new Task<Outcome>() {
+                        @Override
+                        public Outcome run(Script s, Logics logic) {
+                            return interpolate(s, logic,
+                                    new SMTInterpolExpressionGenerator(s), q, false);
+                        }
+                    }, false);
+                    if (outcome.status != Script.LBool.UNSAT) {
+                        continue;
+                    }
+                    for (String t : outcome.interpolants) {
+                        try {
+                            parse(t, outcome.vars);
+                        } catch (IOException | TermParserException ex) {
+                            logger.warning("Warm-up: " + ex.getMessage());
+                        }
+                    }
+                }
+                for (Logics logic : logics) {
+                    getPool(logic).prefill(poolSize);
+                }
+                long ret = (System.nanoTime() - start) / 1000000;
+                warmUpTime = ret;
+                logger.info("SMTInterpol warm-up took " + ret + "ms");
+                return ret;
+            }
+        }, new SolverCallback<Long>() {
+            // callers may drop the future, so failures are logged here
+            @Override
+            public void completed(Long result) {
+            }
+
+            @Override
+            public void failed(Throwable error) {
+                logger.log(Level.WARNING, "SMTInterpol warm-up failed", error);
+            }
+        });
+    }
+
+    public boolean[][] checkImplications(List<Expression<Boolean>> antecedents,
+            List<Expression<Boolean>> consequents) {
+        return checkImplications(null, antecedents, consequents);
+    }
+
+    /**
+     * checks for every pair of antecedent a and consequent c whether
+     * context /\ a implies c. All checks run in one solver session: the
+     * variables are declared and the context is asserted once, and each
+     * antecedent and consequent is asserted in its own push/pop scope.
+     * Subsumption checks are implications with the roles swapped.
+     *
+     * @param context asserted for all checks, may be null
+     * @return result[i][j] is true if antecedent i implies consequent j,
+     * false if it does not or the solver could not decide
+     */
+    public boolean[][] checkImplications(final Expression<Boolean> context,
+            final List<Expression<Boolean>> antecedents,
+            final List<Expression<Boolean>> consequents) {
+        List<Expression<Boolean>> all = new ArrayList<>(antecedents);
+        all.addAll(consequents);
+        if (context != null) {
+            all.add(context);
+        }
+        try {
+            return execute(selectLogic(all), weight(all), new Task<boolean[][]>() {
+                @Override
+                public boolean[][] run(Script s, Logics logic) {
+                    return implications(s, context, antecedents, consequents);
+                }
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new boolean[antecedents.size()][consequents.size()];
+        }
+    }
+
+    /**
+     * sets the executor for asynchronous queries. By default, a fixed pool
+     * of daemon threads, one per pooled script, is used.
+     */
+    public synchronized void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+                private int count = 0;
+
+                @Override
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "smtinterpol-" + (++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private <T> Future<T> submit(final Callable<T> task,
+            final SolverCallback<T> callback) {
+        return getExecutor().submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                T ret;
+                try {
+                    ret = task.call();
+                } catch (Exception | Error ex) {
+                    if (callback != null) {
+                        callback.failed(ex);
+                    }
+                    throw ex;
+                }
+                if (callback != null) {
+                    callback.completed(ret);
+                }
+                return ret;
+            }
+        });
+    }
+
+    /**
+     * translates interpolants one at a time, in order.
+     */
+    private abstract class LazyInterpolants implements Iterator<InterpolantResult> {
+
+        private final int size;
+
+        private int next = 0;
+
+        LazyInterpolants(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public InterpolantResult next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int i = next++;
+            InterpolantResult ret;
+            try {
+                ret = new InterpolantResult(i, translate(i), null);
+            } catch (IOException | TermParserException | RuntimeException ex) {
+                // one bad interpolant must not end the iteration
+                failures.incrementAndGet();
+                ret = new InterpolantResult(i, null, ex);
+            }
+            if (next == size) {
+                done();
+            }
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        abstract Expression<Boolean> translate(int i)
+                throws IOException, TermParserException;
+
+        /**
+         * called after the last interpolant was translated.
+         */
+        void done() {
+        }
+    }
+
+    /**
+     * interpolants printed by the script that computed them, or read from
+     * the cache.
+     */
+    private final class TextInterpolants extends LazyInterpolants {
+
+        private final String[] text;
+
+        private final Set<Variable<?>> vars;
+
+        // cache key, null if results are not stored
+        private final byte[] key;
+
+        TextInterpolants(String[] text, Set<Variable<?>> vars, byte[] key) {
+            super(text.length);
+            this.text = text;
+            this.vars = vars;
+            this.key = key;
+        }
+
+        @Override
+        Expression<Boolean> translate(int i) throws IOException, TermParserException {
+            String t = text[i];
+            if (key == null) {
+                text[i] = null;
+            }
+            return parse(t, vars);
+        }
+
+        @Override
+        void done() {
+            if (key != null) {
+                cache.store(key, true, Arrays.asList(text));
+            }
+        }
+    }
+
+    /**
+     * iterates over interpolants given as SMT-LIB text, for testing
+     * translation failures.
+     */
+    Iterator<InterpolantResult> iterate(String[] text, Set<Variable<?>> vars) {
+        return new TextInterpolants(text.clone(), vars, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Expression<Boolean> parse(String text, Set<Variable<?>> vars)
+            throws IOException, TermParserException {
+        StreamingTermParser parser = new StreamingTermParser(
+                new SMTLibTokenizer(new StringReader(text)), vars, factory);
+        return (Expression<Boolean>) parser.next();
+    }
+
+    private static class Outcome {
+
+        final Script.LBool status;
+
+        // printed on the thread owning the script
+        final String[] interpolants;
+
+        final Set<Variable<?>> vars;
+
+        Outcome(Script.LBool status, String[] interpolants, Set<Variable<?>> vars) {
+            this.status = status;
+            this.interpolants = interpolants;
+            this.vars = vars;
+        }
+    }
+
+    ScriptPool getPool(Logics logic) {
+        ScriptPool pool = pools.get(logic);
+        if (pool == null) {
+            pool = new ScriptPool(logic, poolSize, timeout, reduce,
+                    maxScriptWeight, maxScriptUses);
+            ScriptPool old = pools.putIfAbsent(logic, pool);
+            if (old != null) {
+                pool = old;
+            }
+        }
+        return pool;
+    }
+
+    private Logics selectLogic(List<Expression<Boolean>> exprsn) {
+        return fixedLogic != null ? fixedLogic : LogicSelector.select(exprsn);
+    }
+
+    /**
+     * work done on a pooled script between push and pop.
+     */
+    private interface Task<T> {
+
+        T run(Script s, Logics logic);
+    }
 
-        s.setOption(":produce-interpolants", true);
-        s.setLogic(Logics.QF_LIA);
+    /**
+     * runs a task on a script for the given logic. If SMTInterpol rejects
+     * the task in a logic other than QF_LIA, it is retried on QF_LIA.
+     *
+     * @param weight approximate size of the task, see {@link #weight(List)}
+     */
+    private <T> T execute(Logics logic, long weight, Task<T> task)
+            throws InterruptedException {
+        return execute(logic, weight, task, true);
+    }
+
+    /**
+     * @param count add failures and fallbacks to the statistics
+     */
+    private <T> T execute(Logics logic, long weight, Task<T> task, boolean count)
+            throws InterruptedException {
+        try {
+            try {
+                return execute(getPool(logic), weight, task);
+            } catch (SMTLIBException ex) {
+                if (logic == Logics.QF_LIA) {
+                    throw ex;
+                }
+                logger.fine("Falling back to QF_LIA: " + ex.getMessage());
+                if (count) {
+                    fallbacks.incrementAndGet();
+                }
+                return execute(getPool(Logics.QF_LIA), weight, task);
+            }
+        } catch (RuntimeException ex) {
+            if (count) {
+                failures.incrementAndGet();
+            }
+            throw ex;
+        }
+    }
+
+    private <T> T execute(ScriptPool pool, long weight, Task<T> task)
+            throws InterruptedException {
+        Script s = pool.borrow();
+        boolean ok = false;
+        try {
+            s.push(1);
+            T ret = task.run(s, pool.getLogic());
+            s.pop(1);
+            ok = true;
+            return ret;
+        } finally {
+            if (ok) {
+                pool.release(s, weight);
+            } else {
+                pool.discard(s);
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct expression nodes in exprsn, as an
+     * estimate of the memory a query leaves behind in a script
+     */
+    static long weight(List<? extends Expression<?>> exprsn) {
+        Set<Expression<?>> seen = Collections.newSetFromMap(
+                new IdentityHashMap<Expression<?>, Boolean>());
+        Deque<Expression<?>> todo = new ArrayDeque<Expression<?>>(exprsn);
+        while (!todo.isEmpty()) {
+            Expression<?> e = todo.pop();
+            if (seen.add(e)) {
+                for (Expression<?> c : e.getChildren()) {
+                    todo.push(c);
+                }
+            }
+        }
+        return seen.size();
+    }
+
+    private static boolean[][] implications(Script s, Expression<Boolean> context,
+            List<Expression<Boolean>> antecedents, List<Expression<Boolean>> consequents) {
+        SMTInterpolExpressionGenerator gen = new SMTInterpolExpressionGenerator(s);
+        // generating all terms up front declares every variable once
+        Term[] ants = new Term[antecedents.size()];
+        for (int i = 0; i < ants.length; i++) {
+            ants[i] = gen.generateAssertion(antecedents.get(i));
+        }
+        Term[] negCons = new Term[consequents.size()];
+        for (int j = 0; j < negCons.length; j++) {
+            negCons[j] = s.term("not", gen.generateAssertion(consequents.get(j)));
+        }
+        if (context != null) {
+            s.assertTerm(gen.generateAssertion(context));
+        }
+
+        boolean[][] ret = new boolean[ants.length][negCons.length];
+        for (int i = 0; i < ants.length; i++) {
+            s.push(1);
+            s.assertTerm(ants[i]);
+            for (int j = 0; j < negCons.length; j++) {
+                s.push(1);
+                s.assertTerm(negCons[j]);
+                ret[i][j] = s.checkSat() == Script.LBool.UNSAT;
+                s.pop(1);
+            }
+            s.pop(1);
+        }
+        return ret;
+    }
+
+    /**
+     * asserts the partitions on s and computes interpolants if they are
+     * unsat.
+     *
+     * @param record pass the query to the recorder, if any
+     */
+    private Outcome interpolate(Script s, Logics logic,
+            SMTInterpolExpressionGenerator gen, List<Expression<Boolean>> exprsn,
+            boolean record) {
+        List<Term> partitions = new ArrayList<>(exprsn.size());
+        if (reduce) {
+            Script.LBool res = reduce(s, gen, exprsn, partitions);
+            if (res != Script.LBool.UNSAT) {
+                return new Outcome(res, null, gen.getVariables());
+            }
+        } else {
+            for (Expression<Boolean> e : exprsn) {
+                partitions.add(gen.generateAssertion(e));
+            }
+        }
+
+        ArrayList<String> names = new ArrayList<>();
         int i = 1;
-        for (Expression<Boolean> e : exprsn) {            
-            Term t = gen.generateAssertion(e);
-            //System.out.println("T: " + t);
+        for (Term t : partitions) {            
             String name = "phi_" + (i++);
             names.add(name);
             s.assertTerm(s.annotate(
                     t, new Annotation(":named", name )));
         }
-       
-        if (s.checkSat() == Script.LBool.UNSAT) {
-            Term[] terms = new Term[names.size()];
-            i=0;
-            for (String n : names) {
-                terms[i++] = s.term(n);
-            }
-                    
-            Term[] interpolants;
-            interpolants = s.getInterpolants(terms);            
-            //System.out.println("I: " + Arrays.toString(interpolants));
-            
-            // parse result
-            ArrayList<Expression<Boolean>> ret = new ArrayList<>();
-            for (Term t : interpolants) {
-                //System.out.println(t);
-                TermParser parser = new TermParser(t, gen.getVariables());
-                Expression<Boolean> interpolant;
-              try {
-                interpolant = parser.parse();
-              } catch (TermParserException ex) {
-                logger.severe(ex.getMessage());
-                return null;
-              }
-                ret.add(interpolant);
+
+        Script.LBool res = s.checkSat();
+        // only now: an attempt failing in a weaker logic is retried in
+        // QF_LIA and recorded there
+        if (record && recorder != null && recorder.sample()) {
+            recorder.record(logic, gen.getVariables(), names, partitions);
+        }
+        if (res != Script.LBool.UNSAT) {
+            if (res == Script.LBool.UNKNOWN) {
+                logger.fine("SMTInterpol returned unknown: "
+                        + s.getInfo(":reason-unknown"));
             }
-            
-            return ret;
+            return new Outcome(res, null, gen.getVariables());
+        }
+
+        Term[] terms = new Term[names.size()];
+        i=0;
+        for (String n : names) {
+            terms[i++] = s.term(n);
+        }
+        Term[] interpolants = s.getInterpolants(terms);
+        // Term.toString() updates the script's theory, so the terms are
+        // printed here rather than after the script is released
+        String[] text = new String[interpolants.length];
+        for (i = 0; i < text.length; i++) {
+            text[i] = interpolants[i].toString();
+        }
+        return new Outcome(res, text, gen.getVariables());
+    }
+
+    /**
+     * computes an unsat core over the top-level conjuncts of all
+     * partitions and adds each partition restricted to its conjuncts in
+     * the core to partitions. Interpolants of the restricted partitions are
+     * interpolants of the original ones.
+     *
+     * @return the result of the check
+     */
+    private Script.LBool reduce(Script s, SMTInterpolExpressionGenerator gen,
+            List<Expression<Boolean>> exprsn, List<Term> partitions) {
+        // generate before push, so declarations outlive the core check
+        List<List<Term>> conjuncts = new ArrayList<>(exprsn.size());
+        for (Expression<Boolean> e : exprsn) {
+            List<Term> c = new ArrayList<>();
+            for (Expression<Boolean> part : conjuncts(e)) {
+                c.add(gen.generateAssertion(part));
+            }
+            conjuncts.add(c);
         }
 
-        return null;
+        s.push(1);
+        for (int i = 0; i < conjuncts.size(); i++) {
+            List<Term> c = conjuncts.get(i);
+            for (int j = 0; j < c.size(); j++) {
+                s.assertTerm(s.annotate(
+                        c.get(j), new Annotation(":named", "c_" + i + "_" + j)));
+            }
+        }
+        Script.LBool res = s.checkSat();
+        Set<String> core = new HashSet<>();
+        if (res == Script.LBool.UNSAT) {
+            for (Term t : s.getUnsatCore()) {
+                core.add(t.toString());
+            }
+        }
+        s.pop(1);
+
+        for (int i = 0; i < conjuncts.size(); i++) {
+            List<Term> c = conjuncts.get(i);
+            List<Term> kept = new ArrayList<>();
+            for (int j = 0; j < c.size(); j++) {
+                if (core.contains("c_" + i + "_" + j)) {
+                    kept.add(c.get(j));
+                }
+            }
+            switch (kept.size()) {
+                case 0:
+                    partitions.add(s.term("true"));
+                    break;
+                case 1:
+                    partitions.add(kept.get(0));
+                    break;
+                default:
+                    partitions.add(s.term("and", kept.toArray(new Term[kept.size()])));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return the top-level conjuncts of e, in order
+     */
+    private static List<Expression<Boolean>> conjuncts(Expression<Boolean> e) {
+        List<Expression<Boolean>> ret = new ArrayList<>();
+        Deque<Expression<Boolean>> todo = new ArrayDeque<>();
+        todo.push(e);
+        while (!todo.isEmpty()) {
+            Expression<Boolean> c = todo.pop();
+            if (c instanceof PropositionalCompound
+                    && ((PropositionalCompound) c).getOperator() == LogicalOperator.AND) {
+                todo.push(((PropositionalCompound) c).getRight());
+                todo.push(((PropositionalCompound) c).getLeft());
+            } else {
+                ret.add(c);
+            }
+        }
+        return ret;
     }
 }
@@ -17,10 +17,15 @@ package gov.nasa.jpf.constraints.solvers.smtinterpol;
 
 import gov.nasa.jpf.constraints.api.ConstraintSolver;
 import gov.nasa.jpf.constraints.solvers.ConstraintSolverProvider;
+import java.io.IOException;
 import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class SMTInterpolSolverProvider implements ConstraintSolverProvider {
 
+    private static final Logger logger = Logger.getLogger("constraints");
+
     @Override
     public String[] getNames() {
         return new String[]{"smtinterpol"};
@@ -28,7 +33,19 @@ public class SMTInterpolSolverProvider implements ConstraintSolverProvider {
 
     @Override
     public ConstraintSolver createSolver(Properties config) {
-        return new SMTInterpolSolver();
+        if (Integer.parseInt(config.getProperty("smtinterpol.workers", "0")) > 0) {
+            try {
+                return new RemoteSMTInterpolSolver(WorkerPool.open(config));
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE,
+                        "Cannot start solver workers, using in-process solver", ex);
+            }
+        }
+        SMTInterpolSolver solver = new SMTInterpolSolver(config);
+        if (Boolean.parseBoolean(config.getProperty("smtinterpol.warmup", "false"))) {
+            solver.warmUp();
+        }
+        return solver;
     }
     
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.AbstractExpressionVisitor;
+import gov.nasa.jpf.constraints.expressions.CastExpression;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.IfThenElse;
+import gov.nasa.jpf.constraints.expressions.Negation;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.expressions.PropositionalCompound;
+import gov.nasa.jpf.constraints.expressions.UnaryMinus;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import gov.nasa.jpf.constraints.types.IntegerType;
+import gov.nasa.jpf.constraints.types.Type;
+import java.math.BigInteger;
+
+/**
+ * Prints expressions as SMT-LIB terms without going through a solver
+ * instance. The output can be read back with {@link StreamingTermParser}.
+ */
+public class SMTLibPrinter extends AbstractExpressionVisitor<Void, StringBuilder> {
+
+    private static final SMTLibPrinter INSTANCE = new SMTLibPrinter();
+
+    public static String print(Expression<?> e) {
+        StringBuilder sb = new StringBuilder();
+        e.accept(INSTANCE, sb);
+        return sb.toString();
+    }
+
+    @Override
+    public <E> Void visit(Variable<E> v, StringBuilder sb) {
+        sb.append(QueryRecorder.quote(v.getName()));
+        return null;
+    }
+
+    @Override
+    public <E> Void visit(Constant<E> c, StringBuilder sb) {
+        if (c.getType() instanceof BuiltinTypes.BoolType) {
+            sb.append(((Boolean) c.getValue()) ? "true" : "false");
+            return null;
+        }
+        if (c.getType() instanceof IntegerType) {
+            sb.append(QueryRecorder.numeral(new BigInteger(c.getValue().toString())));
+            return null;
+        }
+        throw new IllegalStateException("Cannot handle consts of type " + c.getType());
+    }
+
+    @Override
+    public Void visit(Negation n, StringBuilder sb) {
+        return app("not", sb, n.getNegated());
+    }
+
+    @Override
+    public Void visit(NumericBooleanExpression n, StringBuilder sb) {
+        NumericComparator cmp = n.getComparator();
+        switch (cmp) {
+            case EQ:
+                return app("=", sb, n.getLeft(), n.getRight());
+            case NE:
+                sb.append("(not ");
+                app("=", sb, n.getLeft(), n.getRight());
+                sb.append(')');
+                return null;
+            case GE:
+                return app(">=", sb, n.getLeft(), n.getRight());
+            case GT:
+                return app(">", sb, n.getLeft(), n.getRight());
+            case LE:
+                return app("<=", sb, n.getLeft(), n.getRight());
+            case LT:
+                return app("<", sb, n.getLeft(), n.getRight());
+            default:
+                throw new UnsupportedOperationException("Comparator "
+                        + cmp + " not supported");
+        }
+    }
+
+    @Override
+    public <E> Void visit(NumericCompound<E> n, StringBuilder sb) {
+        switch (n.getOperator()) {
+            case PLUS:
+                return app("+", sb, n.getLeft(), n.getRight());
+            case MINUS:
+                return app("-", sb, n.getLeft(), n.getRight());
+            case MUL:
+                return app("*", sb, n.getLeft(), n.getRight());
+            case DIV:
+            case REM:
+                // same encoding as SMTInterpolExpressionGenerator, with the
+                // operands bound once; the body only refers to the bound names
+                sb.append("(let ((?a ");
+                visit(n.getLeft(), sb);
+                sb.append(") (?b ");
+                visit(n.getRight(), sb);
+                sb.append(")) ");
+                String div = "(ite (>= ?a 0) (div ?a ?b) (- (div (- ?a) ?b)))";
+                sb.append(n.getOperator() == NumericOperator.DIV
+                        ? div : "(- ?a (* ?b " + div + "))");
+                sb.append(')');
+                return null;
+            default:
+                throw new IllegalArgumentException("Cannot handle numeric operator " + n.getOperator());
+        }
+    }
+
+    @Override
+    public Void visit(PropositionalCompound n, StringBuilder sb) {
+        switch (n.getOperator()) {
+            case AND:
+                return app("and", sb, n.getLeft(), n.getRight());
+            case OR:
+                return app("or", sb, n.getLeft(), n.getRight());
+            case EQUIV:
+                return app("=", sb, n.getLeft(), n.getRight());
+            case IMPLY:
+                return app("=>", sb, n.getLeft(), n.getRight());
+            case XOR:
+                return app("xor", sb, n.getLeft(), n.getRight());
+            default:
+                throw new IllegalStateException("Cannot handle propositional operator " + n.getOperator());
+        }
+    }
+
+    @Override
+    public <E> Void visit(UnaryMinus<E> n, StringBuilder sb) {
+        return app("-", sb, n.getNegated());
+    }
+
+    /**
+     * same encoding as {@link SMTInterpolExpressionGenerator}.
+     */
+    @Override
+    public <F, E> Void visit(CastExpression<F, E> cast, StringBuilder sb) {
+        Type<F> ft = cast.getCasted().getType();
+        Type<E> tt = cast.getType();
+        if (!(ft instanceof IntegerType) || !(tt instanceof IntegerType)) {
+            throw new IllegalStateException("Cannot handle cast from " + ft + " to " + tt);
+        }
+        IntegerType<?> to = (IntegerType<?>) tt;
+        if (!SMTInterpolExpressionGenerator.narrows((IntegerType<?>) ft, to)) {
+            return visit(cast.getCasted(), sb);
+        }
+        BigInteger min = to.getMinInt();
+        BigInteger size = to.getMaxInt().subtract(min).add(BigInteger.ONE);
+        if (min.signum() != 0) {
+            sb.append("(- ");
+        }
+        sb.append("(mod ");
+        if (min.signum() != 0) {
+            sb.append("(+ ");
+            visit(cast.getCasted(), sb);
+            sb.append(' ').append(QueryRecorder.numeral(min.negate())).append(')');
+        } else {
+            visit(cast.getCasted(), sb);
+        }
+        sb.append(' ').append(size).append(')');
+        if (min.signum() != 0) {
+            sb.append(' ').append(QueryRecorder.numeral(min.negate())).append(')');
+        }
+        return null;
+    }
+
+    @Override
+    public <E> Void visit(IfThenElse<E> n, StringBuilder sb) {
+        return app("ite", sb, n.getIf(), n.getThen(), n.getElse());
+    }
+
+    private Void app(String op, StringBuilder sb, Expression<?>... args) {
+        sb.append('(').append(op);
+        for (Expression<?> a : args) {
+            sb.append(' ');
+            visit(a, sb);
+        }
+        sb.append(')');
+        return null;
+    }
+}
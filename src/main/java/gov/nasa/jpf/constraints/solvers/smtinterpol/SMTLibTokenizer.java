@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Index-based SMT-LIB tokenizer reading from a {@link Reader} or a
+ * memory-mapped file.
+ *
+ * Token text is kept in a reusable buffer. Symbols are canonicalized
+ * through a symbol table, so repeated symbols do not allocate.
+ */
+public class SMTLibTokenizer implements Closeable {
+
+    public enum Token {
+        LPAREN, RPAREN, SYMBOL, NUMERAL, DECIMAL, KEYWORD, STRING, EOF
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final Reader reader;
+
+    private final char[] buffer;
+
+    private final FileChannel channel;
+
+    private MappedByteBuffer mapped;
+
+    private long mappedEnd;
+
+    private int pos;
+
+    private int limit;
+
+    private char[] token = new char[64];
+
+    private int tokenLength;
+
+    private String[] symbols = new String[1024];
+
+    private int symbolCount;
+
+    private long line = 1;
+
+    public SMTLibTokenizer(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.channel = null;
+    }
+
+    private SMTLibTokenizer(FileChannel channel) {
+        this.reader = null;
+        this.buffer = null;
+        this.channel = channel;
+    }
+
+    /**
+     * creates a tokenizer over a memory-mapped (ASCII) file. Files larger
+     * than 2GB are mapped chunk by chunk.
+     */
+    public static SMTLibTokenizer map(File file) throws IOException {
+        return new SMTLibTokenizer(new RandomAccessFile(file, "r").getChannel());
+    }
+
+    public Token next() throws IOException {
+        int c = skipWhitespace();
+        tokenLength = 0;
+        switch (c) {
+            case -1:
+                return Token.EOF;
+            case '(':
+                return Token.LPAREN;
+            case ')':
+                return Token.RPAREN;
+            case '|':
+                while ((c = read()) != '|') {
+                    if (c < 0) {
+                        throw new IOException("Unterminated quoted symbol in line " + line);
+                    }
+                    append(c);
+                }
+                return Token.SYMBOL;
+            case '"':
+                while (true) {
+                    c = read();
+                    if (c < 0) {
+                        throw new IOException("Unterminated string in line " + line);
+                    }
+                    if (c == '"') {
+                        c = peek();
+                        if (c != '"') {
+                            return Token.STRING;
+                        }
+                        read();
+                    }
+                    append(c);
+                }
+            default:
+                append(c);
+                while (!isDelimiter(c = peek())) {
+                    append(read());
+                }
+                return classify();
+        }
+    }
+
+    /**
+     * @return true if the current token text equals s, without allocating
+     */
+    public boolean is(String s) {
+        if (s.length() != tokenLength) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the canonical string instance for the current token
+     */
+    public String symbol() {
+        int h = hash();
+        int mask = symbols.length - 1;
+        for (int i = h & mask;; i = (i + 1) & mask) {
+            String s = symbols[i];
+            if (s == null) {
+                s = new String(token, 0, tokenLength);
+                symbols[i] = s;
+                if (++symbolCount * 2 > symbols.length) {
+                    rehash();
+                }
+                return s;
+            }
+            if (s.hashCode() == h && is(s)) {
+                return s;
+            }
+        }
+    }
+
+    /**
+     * @return the current token text as a fresh string
+     */
+    public String text() {
+        return new String(token, 0, tokenLength);
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private Token classify() {
+        char c = token[0];
+        if (c == ':') {
+            return Token.KEYWORD;
+        }
+        if (c < '0' || c > '9') {
+            return Token.SYMBOL;
+        }
+        for (int i = 1; i < tokenLength; i++) {
+            if (token[i] == '.') {
+                return Token.DECIMAL;
+            }
+        }
+        return Token.NUMERAL;
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == ';') {
+                while (c >= 0 && c != '\n') {
+                    c = read();
+                }
+            }
+            if (c < 0 || !Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c < 0 || c == '(' || c == ')' || c == '|' || c == '"'
+                || c == ';' || Character.isWhitespace(c);
+    }
+
+    private void append(int c) {
+        if (tokenLength == token.length) {
+            token = Arrays.copyOf(token, token.length * 2);
+        }
+        token[tokenLength++] = (char) c;
+    }
+
+    // polynomial hash, equal to String.hashCode()
+    private int hash() {
+        int h = 0;
+        for (int i = 0; i < tokenLength; i++) {
+            h = 31 * h + token[i];
+        }
+        return h;
+    }
+
+    private void rehash() {
+        String[] old = symbols;
+        symbols = new String[old.length * 2];
+        int mask = symbols.length - 1;
+        for (String s : old) {
+            if (s != null) {
+                int i = s.hashCode() & mask;
+                while (symbols[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                symbols[i] = s;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) {
+            if (channel != null) {
+                mapped.get();
+            } else {
+                pos++;
+            }
+            if (c == '\n') {
+                line++;
+            }
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (channel != null) {
+            if ((mapped == null || !mapped.hasRemaining()) && !remap()) {
+                return -1;
+            }
+            return mapped.get(mapped.position()) & 0xff;
+        }
+        if (pos == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos];
+    }
+
+    private boolean remap() throws IOException {
+        long size = channel.size();
+        if (mappedEnd >= size) {
+            return false;
+        }
+        long len = Math.min(CHUNK_SIZE, size - mappedEnd);
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, mappedEnd, len);
+        mappedEnd += len;
+        return true;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+import java.math.BigInteger;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of initialized SMTInterpol scripts for one logic.
+ *
+ * Scripts are created on demand, at most {@code size} of them exist at any
+ * time, and {@link #borrow()} blocks while all of them are in use. Callers
+ * must leave a script on assertion level 0 (i.e., work between push and
+ * pop) before releasing it.
+ *
+ * SMTInterpol keeps terms and learned clauses of popped queries alive, so
+ * the pool tracks the approximate weight (expression nodes of all queries)
+ * and the number of uses of every script. A script exceeding either
+ * limit is reset on release, which frees everything it holds.
+ */
+public class ScriptPool {
+
+    private static final class Usage {
+
+        long weight;
+
+        int uses;
+    }
+
+    private final Logics logic;
+
+    private final long timeout;
+
+    private final boolean unsatCores;
+
+    private final int size;
+
+    private final long maxWeight;
+
+    private final int maxUses;
+
+    private final Semaphore permits;
+
+    private final AtomicInteger live = new AtomicInteger();
+
+    // only updated by the thread holding the script
+    private final ConcurrentMap<Script, Usage> usage = new ConcurrentHashMap<>();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong recycled = new AtomicLong();
+
+    private final BlockingQueue<Script> idle = new LinkedBlockingQueue<>();
+
+    /**
+     * @param logic the logic all scripts are set up for
+     * @param size maximal number of scripts
+     * @param timeout timeout for check-sat in milliseconds, 0 for none
+     * @param unsatCores enable unsat cores
+     * @param maxWeight reset scripts after queries of this many expression
+     * nodes in total, 0 for no limit
+     * @param maxUses reset scripts after this many uses, 0 for no limit
+     */
+    public ScriptPool(Logics logic, int size, long timeout, boolean unsatCores,
+            long maxWeight, int maxUses) {
+        this.logic = logic;
+        this.timeout = timeout;
+        this.unsatCores = unsatCores;
+        this.size = size;
+        this.maxWeight = maxWeight;
+        this.maxUses = maxUses;
+        this.permits = new Semaphore(size, true);
+    }
+
+    public ScriptPool(Logics logic, int size, long timeout, boolean unsatCores) {
+        this(logic, size, timeout, unsatCores, 0, 0);
+    }
+
+    public Script borrow() throws InterruptedException {
+        permits.acquire();
+        Script s = idle.poll();
+        if (s == null) {
+            try {
+                s = create();
+            } catch (RuntimeException ex) {
+                permits.release();
+                throw ex;
+            }
+        }
+        return s;
+    }
+
+    public void release(Script s) {
+        release(s, 0);
+    }
+
+    /**
+     * returns a script after a query of the given weight, resetting it if
+     * it exceeds the limits of the pool.
+     */
+    public void release(Script s, long queryWeight) {
+        try {
+            Usage u = usage.get(s);
+            u.weight += queryWeight;
+            u.uses++;
+            weight.addAndGet(queryWeight);
+            if ((maxWeight > 0 && u.weight >= maxWeight)
+                    || (maxUses > 0 && u.uses >= maxUses)) {
+                recycle(s, u);
+            }
+            idle.add(s);
+        } catch (RuntimeException ex) {
+            drop(s);
+            throw ex;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * drops a script that is in an unknown state after an error.
+     */
+    public void discard(Script s) {
+        try {
+            drop(s);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * creates idle scripts until n scripts exist, without waiting for
+     * scripts in use.
+     */
+    public void prefill(int n) {
+        n = Math.min(n, size);
+        while (live.get() < n && permits.tryAcquire()) {
+            try {
+                idle.add(create());
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    public Logics getLogic() {
+        return logic;
+    }
+
+    /**
+     * @return approximate weight of all scripts of this pool, in expression
+     * nodes asserted since their creation or last reset
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * @return number of scripts reset for exceeding a limit
+     */
+    public long getRecycledCount() {
+        return recycled.get();
+    }
+
+    private void recycle(Script s, Usage u) {
+        s.reset();
+        init(s);
+        weight.addAndGet(-u.weight);
+        u.weight = 0;
+        u.uses = 0;
+        recycled.incrementAndGet();
+    }
+
+    private void drop(Script s) {
+        Usage u = usage.remove(s);
+        if (u != null) {
+            weight.addAndGet(-u.weight);
+            live.decrementAndGet();
+        }
+        s.exit();
+    }
+
+    private Script create() {
+        Script s = new SMTInterpol();
+        init(s);
+        usage.put(s, new Usage());
+        live.incrementAndGet();
+        return s;
+    }
+
+    private void init(Script s) {
+        s.setOption(":produce-interpolants", true);
+        if (unsatCores) {
+            s.setOption(":produce-unsat-cores", true);
+        }
+        if (timeout > 0) {
+            s.setOption(":timeout", BigInteger.valueOf(timeout));
+        }
+        s.setLogic(logic);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Entry point of the forked solver processes started by {@link WorkerPool}.
+ *
+ * Requests are read from stdin and answered on stdout. Anything else the
+ * solver prints is redirected to stderr. The solver is configured by the
+ * first message, which carries the configuration of the pool.
+ */
+public class SolverWorker {
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+
+        Properties config = WorkerProtocol.readConfig(in);
+        SMTInterpolSolver solver = new SMTInterpolSolver(config);
+        if (Boolean.parseBoolean(config.getProperty("smtinterpol.warmup", "false"))) {
+            solver.warmUp();
+        }
+        while (true) {
+            ByteBuffer request;
+            try {
+                request = WorkerProtocol.readMessage(in);
+            } catch (EOFException ex) {
+                return;
+            }
+            try {
+                List<Expression<Boolean>> terms = WorkerProtocol.readExpressions(
+                        request, Collections.<Variable<?>>emptyList());
+                List<Expression<Boolean>> itps = solver.getInterpolants(terms);
+                if (itps == null) {
+                    out.writeByte(WorkerProtocol.NO_INTERPOLANTS);
+                } else {
+                    ByteBuffer reply = ExpressionWriter.write(itps);
+                    out.writeByte(WorkerProtocol.INTERPOLANTS);
+                    WorkerProtocol.writeMessage(out, reply);
+                }
+            } catch (Exception ex) {
+                out.writeByte(WorkerProtocol.ERROR);
+                WorkerProtocol.writeString(out, String.valueOf(ex));
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.solvers.smtinterpol.SMTLibTokenizer.Token;
+import gov.nasa.jpf.constraints.solvers.smtinterpol.exception.TermParserException;
+import gov.nasa.jpf.constraints.util.ExpressionUtil;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses a sequence of SMT-LIB terms from a {@link SMTLibTokenizer}.
+ *
+ * In contrast to {@link TermParser}, the parser does not work on the
+ * string representation of a term and does not recurse, so it can be used
+ * on large terms and on corpora that do not fit into memory. Terms are
+ * translated into the same expressions that {@link TermParser} produces.
+ */
+public class StreamingTermParser {
+
+    private enum Kind {
+        APP, LET, ANNOTATION
+    }
+
+    private enum State {
+        ARGS, LET_OPEN, LET_BINDINGS, LET_NAME, LET_VALUE, LET_CLOSE_BINDING,
+        LET_BODY, CLOSE, ATTRIBUTES
+    }
+
+    private static class Frame {
+
+        final Kind kind;
+        final String op;
+        final List<Expression> args = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final List<Expression> shadowed = new ArrayList<>();
+        State state;
+        int depth;
+
+        Frame(Kind kind, String op, State state) {
+            this.kind = kind;
+            this.op = op;
+            this.state = state;
+        }
+    }
+
+    private final SMTLibTokenizer tokenizer;
+
+    private final ExpressionFactory factory;
+
+    private final Map<String, Variable> vars = new HashMap<>();
+
+    private final Map<String, Expression> let = new HashMap<>();
+
+    private final Deque<Frame> stack = new ArrayDeque<>();
+
+    private Expression result;
+
+    public StreamingTermParser(SMTLibTokenizer tokenizer,
+            Collection<? extends Variable<?>> vars) {
+        this(tokenizer, vars, new ExpressionFactory());
+    }
+
+    public StreamingTermParser(SMTLibTokenizer tokenizer,
+            Collection<? extends Variable<?>> vars, ExpressionFactory factory) {
+        this.tokenizer = tokenizer;
+        this.factory = factory;
+        for (Variable v : vars) {
+            this.vars.put(v.getName(), factory.variable(v));
+        }
+    }
+
+    /**
+     * parses the next term.
+     *
+     * @return the term or null if the input is exhausted
+     */
+    public Expression<?> next() throws IOException, TermParserException {
+        result = null;
+        stack.clear();
+        let.clear();
+        Token t = tokenizer.next();
+        if (t == Token.EOF) {
+            return null;
+        }
+        while (true) {
+            Frame top = stack.peek();
+            if (top != null && top.state != State.ARGS
+                    && top.state != State.LET_VALUE && top.state != State.LET_BODY) {
+                structural(top, t);
+            } else {
+                switch (t) {
+                    case LPAREN:
+                        open();
+                        break;
+                    case RPAREN:
+                        if (top == null || top.kind != Kind.APP) {
+                            throw error("unexpected )");
+                        }
+                        stack.pop();
+                        deliver(factory.apply(top.op, top.args));
+                        break;
+                    case SYMBOL:
+                        deliver(symbol());
+                        break;
+                    case NUMERAL:
+                        deliver(factory.numeral(tokenizer.text()));
+                        break;
+                    case EOF:
+                        throw error("unexpected end of input");
+                    default:
+                        throw error("unexpected token " + tokenizer.text());
+                }
+            }
+            if (result != null) {
+                return result;
+            }
+            t = tokenizer.next();
+        }
+    }
+
+    private void open() throws IOException, TermParserException {
+        if (tokenizer.next() != Token.SYMBOL) {
+            throw error("expected operator");
+        }
+        if (tokenizer.is("let")) {
+            stack.push(new Frame(Kind.LET, null, State.LET_OPEN));
+        } else if (tokenizer.is("!")) {
+            stack.push(new Frame(Kind.ANNOTATION, null, State.ARGS));
+        } else {
+            stack.push(new Frame(Kind.APP, tokenizer.symbol(), State.ARGS));
+        }
+    }
+
+    private void structural(Frame top, Token t) throws TermParserException {
+        switch (top.state) {
+            case LET_OPEN:
+                expect(t, Token.LPAREN);
+                top.state = State.LET_BINDINGS;
+                return;
+            case LET_BINDINGS:
+                if (t == Token.LPAREN) {
+                    top.state = State.LET_NAME;
+                    return;
+                }
+                expect(t, Token.RPAREN);
+                // let binds in parallel: values were parsed in the outer scope
+                for (int i = 0; i < top.names.size(); i++) {
+                    top.shadowed.add(let.put(top.names.get(i), top.args.get(i)));
+                }
+                top.state = State.LET_BODY;
+                return;
+            case LET_NAME:
+                expect(t, Token.SYMBOL);
+                top.names.add(tokenizer.symbol());
+                top.state = State.LET_VALUE;
+                return;
+            case LET_CLOSE_BINDING:
+                expect(t, Token.RPAREN);
+                top.state = State.LET_BINDINGS;
+                return;
+            case CLOSE:
+                expect(t, Token.RPAREN);
+                stack.pop();
+                if (top.kind == Kind.LET) {
+                    for (int i = top.names.size() - 1; i >= 0; i--) {
+                        Expression old = top.shadowed.get(i);
+                        if (old == null) {
+                            let.remove(top.names.get(i));
+                        } else {
+                            let.put(top.names.get(i), old);
+                        }
+                    }
+                }
+                deliver(top.args.get(top.args.size() - 1));
+                return;
+            case ATTRIBUTES:
+                // skip attribute values, which may be s-expressions
+                if (t == Token.LPAREN) {
+                    top.depth++;
+                } else if (t == Token.RPAREN) {
+                    if (top.depth-- == 0) {
+                        stack.pop();
+                        deliver(top.args.get(0));
+                    }
+                } else if (t == Token.EOF) {
+                    throw error("unexpected end of input");
+                }
+                return;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private void deliver(Expression e) {
+        Frame top = stack.peek();
+        if (top == null) {
+            result = e;
+            return;
+        }
+        top.args.add(e);
+        switch (top.state) {
+            case LET_VALUE:
+                top.state = State.LET_CLOSE_BINDING;
+                break;
+            case LET_BODY:
+                top.state = State.CLOSE;
+                break;
+            default:
+                if (top.kind == Kind.ANNOTATION) {
+                    top.state = State.ATTRIBUTES;
+                }
+        }
+    }
+
+    private Expression symbol() throws TermParserException {
+        if (tokenizer.is("true")) {
+            return ExpressionUtil.TRUE;
+        }
+        if (tokenizer.is("false")) {
+            return ExpressionUtil.FALSE;
+        }
+        String name = tokenizer.symbol();
+        Expression e = let.get(name);
+        if (e == null) {
+            e = vars.get(name);
+        }
+        if (e == null) {
+            throw error("unknown symbol " + name);
+        }
+        return e;
+    }
+
+    private void expect(Token actual, Token expected) throws TermParserException {
+        if (actual != expected) {
+            throw error("expected " + expected + " but found " + actual);
+        }
+    }
+
+    private TermParserException error(String msg) {
+        return new TermParserException(msg + " in line " + tokenizer.getLine());
+    }
+}
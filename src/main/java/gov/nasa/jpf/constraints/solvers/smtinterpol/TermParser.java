@@ -18,15 +18,7 @@ package gov.nasa.jpf.constraints.solvers.smtinterpol;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 import gov.nasa.jpf.constraints.api.Expression;
 import gov.nasa.jpf.constraints.api.Variable;
-import gov.nasa.jpf.constraints.expressions.Constant;
-import gov.nasa.jpf.constraints.expressions.Negation;
-import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
-import gov.nasa.jpf.constraints.expressions.NumericComparator;
-import gov.nasa.jpf.constraints.expressions.NumericCompound;
-import gov.nasa.jpf.constraints.expressions.NumericOperator;
-import gov.nasa.jpf.constraints.expressions.UnaryMinus;
 import gov.nasa.jpf.constraints.solvers.smtinterpol.exception.TermParserException;
-import gov.nasa.jpf.constraints.types.BuiltinTypes;
 import gov.nasa.jpf.constraints.util.ExpressionUtil;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -41,10 +33,17 @@ public class TermParser {
 
     private final Map<String, Variable> vars = new HashMap<>();
 
+    private final ExpressionFactory factory;
+
     public TermParser(Term t, Set<Variable<?>> vars) {
+        this(t, vars, new ExpressionFactory());
+    }
+
+    public TermParser(Term t, Set<Variable<?>> vars, ExpressionFactory factory) {
+        this.factory = factory;
         this.input = t.toString().trim();
         for (Variable v : vars) {
-            this.vars.put(v.getName(), v);
+            this.vars.put(v.getName(), factory.variable(v));
         }
     }
 
@@ -54,7 +53,7 @@ public class TermParser {
         return result;
     }
 
-    private Expression parseTerm() {
+    private Expression parseTerm() throws TermParserException {
         if (isComplexTerm()) {
             return parseComplexTerm();
         } else {
@@ -62,26 +61,27 @@ public class TermParser {
         }
     }
 
-    private Expression parseSimpleTerm() {
+    private Expression parseSimpleTerm() throws TermParserException {
         String token = nextToken().trim();
         if (token.equals("true")) {
             return ExpressionUtil.TRUE;
         } else if (token.equals("false")) {
             return ExpressionUtil.FALSE;
         } else if (token.matches("\\d+")) {
-            return new Constant(BuiltinTypes.SINT32, Integer.parseInt(token));
+            return factory.numeral(token);
         } else {
             if (let.containsKey(token)) {
                 return let.get(token);
             }
-            //return new Variable(BuiltinTypes.SINT32, token);
             Variable var = this.vars.get(token);
-            assert var != null;
+            if (var == null) {
+                throw new TermParserException("unknown symbol: " + token);
+            }
             return var;
         }
     }
 
-    private Expression parseComplexTerm() {
+    private Expression parseComplexTerm() throws TermParserException {
         removeParen();
         String op = nextToken();
         ArrayList<Expression> sub = new ArrayList<>();
@@ -89,31 +89,7 @@ public class TermParser {
           sub.add(parseTerm());
         }
         removeParen();
-        switch (op) {
-            case "=":
-                return new NumericBooleanExpression(
-                        sub.get(0), NumericComparator.EQ, sub.get(1));
-            case ">=":
-                return new NumericBooleanExpression(
-                        sub.get(0), NumericComparator.GE, sub.get(1));
-            case "<=":
-                return new NumericBooleanExpression(
-                        sub.get(0), NumericComparator.LE, sub.get(1));
-
-            case "-":
-                return (sub.size() == 1 ? new UnaryMinus<>(sub.get(0))
-                        : new NumericCompound(sub.get(0), NumericOperator.MINUS, sub.get(1)));
-            case "+":
-                return new NumericCompound(
-                        sub.get(0), NumericOperator.PLUS, sub.get(1));
-            case "and":
-                return ExpressionUtil.and(sub.toArray(new Expression[]{}));
-            case "or":
-                return ExpressionUtil.or(sub.toArray(new Expression[]{}));
-            case "not":
-                return new Negation(sub.get(0));
-        }
-        throw new IllegalArgumentException("unknown operator: " + op);
+        return factory.apply(op, sub);
     }
 
     private boolean isComplexTerm() {
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import de.uni_freiburg.informatik.ultimate.logic.SMTLIBException;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.ParseEnvironment;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Replays a directory of traces written by {@link QueryRecorder} and
+ * reports the time spent on each of them.
+ *
+ * Usage: {@code TraceReplay <trace-dir> [repetitions]}
+ */
+public class TraceReplay {
+
+    private static final Logger logger = Logger.getLogger("constraints");
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            logger.severe("usage: TraceReplay <trace-dir> [repetitions]");
+            System.exit(1);
+        }
+        int reps = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        File[] traces = new File(args[0]).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".smt2");
+            }
+        });
+        if (traces == null) {
+            logger.severe("not a directory: " + args[0]);
+            System.exit(1);
+        }
+        Arrays.sort(traces);
+
+        long total = 0;
+        int failed = 0;
+        for (File f : traces) {
+            long best = Long.MAX_VALUE;
+            try {
+                for (int i = 0; i < reps; i++) {
+                    best = Math.min(best, replay(f));
+                }
+                total += best;
+                logger.info(f.getName() + "\t" + (best / 1000000) + " ms");
+            } catch (SMTLIBException ex) {
+                failed++;
+                logger.warning(f.getName() + "\tFAILED: " + ex.getMessage());
+            }
+        }
+        logger.info("traces: " + traces.length + ", failed: " + failed
+                + ", total: " + (total / 1000000) + " ms");
+    }
+
+    /**
+     * @return wall clock time for running the trace in nanoseconds
+     */
+    public static long replay(File trace) {
+        Script s = new SMTInterpol();
+        long start = System.nanoTime();
+        try {
+            new ParseEnvironment(s).parseScript(trace.getPath());
+            return System.nanoTime() - start;
+        } finally {
+            s.exit();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import java.util.List;
+
+/**
+ * Receives the outcome of background interpolant validation. Callbacks run
+ * on a validator thread.
+ */
+public interface ValidationCallback {
+
+    /**
+     * @param index position of the first interpolant that is not implied
+     * by its predecessor and partition; interpolants.size() if the last one
+     * is consistent with the last partition
+     */
+    void invalid(List<Expression<Boolean>> partitions,
+            List<Expression<Boolean>> interpolants, int index);
+
+    /**
+     * the check could not be completed, e.g., due to a timeout.
+     */
+    void failed(List<Expression<Boolean>> partitions,
+            List<Expression<Boolean>> interpolants, Throwable error);
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import gov.nasa.jpf.constraints.util.ExpressionUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Representative interpolation queries used for warming up a solver: the
+ * stream protocol of StreamTest (a connected sink with capacity written
+ * to a number of times), as two-partition and as sequence queries.
+ */
+final class WarmUp {
+
+    private static final Constant<Integer> ZERO = new Constant<>(BuiltinTypes.SINT32, 0);
+
+    private static final Constant<Integer> ONE = new Constant<>(BuiltinTypes.SINT32, 1);
+
+    private static final Constant<Integer> TWO = new Constant<>(BuiltinTypes.SINT32, 2);
+
+    private WarmUp() {
+    }
+
+    /**
+     * @return unsat queries, all of which have interpolants
+     */
+    static List<List<Expression<Boolean>>> queries() {
+        List<List<Expression<Boolean>>> ret = new ArrayList<>();
+        for (int writes = 1; writes <= 3; writes++) {
+            List<Expression<Boolean>> steps = steps(writes);
+            ret.add(Arrays.asList(steps.get(0),
+                    ExpressionUtil.and(steps.subList(1, steps.size()))));
+            ret.add(steps);
+        }
+        return ret;
+    }
+
+    /**
+     * @return init /\ connect, one partition per write, and the error
+     * condition after the last write
+     */
+    private static List<Expression<Boolean>> steps(int writes) {
+        Variable<Integer>[] sink = vars("sink_", writes + 2);
+        Variable<Integer>[] cap = vars("cap_", writes + 2);
+        Variable<Integer> s = new Variable<>(BuiltinTypes.SINT32, "s_0");
+
+        List<Expression<Boolean>> ret = new ArrayList<>();
+        ret.add(ExpressionUtil.and(
+                cmp(sink[0], NumericComparator.EQ, ZERO),
+                cmp(cap[0], NumericComparator.EQ, TWO),
+                cmp(s, NumericComparator.GT, ZERO),
+                cmp(sink[0], NumericComparator.LE, ZERO),
+                cmp(s, NumericComparator.EQ, sink[1]),
+                cmp(cap[0], NumericComparator.EQ, cap[1])));
+        for (int i = 1; i <= writes; i++) {
+            ret.add(ExpressionUtil.and(
+                    cmp(sink[i], NumericComparator.GT, ZERO),
+                    cmp(cap[i], NumericComparator.GT, ZERO),
+                    cmp(sink[i], NumericComparator.EQ, sink[i + 1]),
+                    cmp(cap[i], NumericComparator.EQ, new NumericCompound<>(
+                            cap[i + 1], NumericOperator.PLUS, ONE))));
+        }
+        // each write decrements the capacity of 2
+        ret.add(ExpressionUtil.and(
+                cmp(sink[writes + 1], NumericComparator.GT, ZERO),
+                cmp(cap[writes + 1], NumericComparator.GT,
+                        new Constant<>(BuiltinTypes.SINT32, 2 - writes))));
+        return ret;
+    }
+
+    private static Expression<Boolean> cmp(Expression<Integer> l,
+            NumericComparator c, Expression<Integer> r) {
+        return new NumericBooleanExpression(l, c, r);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Variable<Integer>[] vars(String prefix, int n) {
+        Variable<Integer>[] ret = new Variable[n];
+        for (int i = 0; i < n; i++) {
+            ret[i] = new Variable<>(BuiltinTypes.SINT32, prefix + i);
+        }
+        return ret;
+    }
+}
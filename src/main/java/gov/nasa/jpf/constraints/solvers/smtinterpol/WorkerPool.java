@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of forked JVMs running {@link SolverWorker}.
+ *
+ * Each worker handles one query at a time. Callers take the next idle
+ * worker and block while all workers are busy. A worker that crashes, runs
+ * out of memory, or exceeds the query timeout is killed and replaced.
+ *
+ * The smtinterpol.* properties other than smtinterpol.workers.* are sent
+ * to every worker when it starts and configure its solver.
+ */
+public class WorkerPool {
+
+    private static final Logger logger = Logger.getLogger("constraints");
+
+    private static final Map<Map<String, String>, WorkerPool> open = new HashMap<>();
+
+    private final Map<String, String> key;
+
+    private final Properties solverConfig = new Properties();
+
+    private final List<String> command;
+
+    private final long timeout;
+
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    private final ScheduledExecutorService watchdog;
+
+    private final AtomicLong restarts = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    /**
+     * reads the pool configuration:
+     * smtinterpol.workers (number of processes),
+     * smtinterpol.workers.heap (-Xmx of each process, e.g. 512m),
+     * smtinterpol.workers.timeout (ms per query, 0 for none),
+     * smtinterpol.workers.classpath (defaults to the jars of this plugin,
+     * jConstraints and SMTInterpol).
+     */
+    public WorkerPool(Properties config) throws IOException {
+        this.key = key(config);
+        for (Map.Entry<String, String> e : key.entrySet()) {
+            if (!e.getKey().startsWith("smtinterpol.workers")) {
+                solverConfig.setProperty(e.getKey(), e.getValue());
+            }
+        }
+        int size = Integer.parseInt(config.getProperty("smtinterpol.workers"));
+        this.timeout = Long.parseLong(config.getProperty("smtinterpol.workers.timeout", "0"));
+
+        command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java");
+        String heap = config.getProperty("smtinterpol.workers.heap");
+        if (heap != null) {
+            command.add("-Xmx" + heap);
+        }
+        command.add("-cp");
+        command.add(config.getProperty("smtinterpol.workers.classpath", classpath()));
+        command.add(SolverWorker.class.getName());
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "smtinterpol-worker-watchdog");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            for (int i = 0; i < size; i++) {
+                Worker w = new Worker();
+                workers.add(w);
+                idle.add(w);
+            }
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    /**
+     * returns the pool for a configuration, starting it if necessary.
+     * Solvers in one JVM with the same smtinterpol.* properties share one
+     * pool.
+     */
+    public static WorkerPool open(Properties config) throws IOException {
+        Map<String, String> key = key(config);
+        synchronized (open) {
+            WorkerPool pool = open.get(key);
+            if (pool == null) {
+                pool = new WorkerPool(config);
+                open.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    private static Map<String, String> key(Properties config) {
+        Map<String, String> ret = new TreeMap<>();
+        for (String name : config.stringPropertyNames()) {
+            if (name.startsWith("smtinterpol.")) {
+                ret.put(name, config.getProperty(name));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * runs an interpolation query on the next idle worker.
+     *
+     * @return the interpolants or null if there are none or the worker failed
+     */
+    public List<Expression<Boolean>> getInterpolants(List<Expression<Boolean>> exprsn)
+            throws InterruptedException {
+        Set<Variable<?>> vars = new LinkedHashSet<>();
+        for (Expression<Boolean> e : exprsn) {
+            e.collectFreeVariables(vars);
+        }
+        Worker w = take();
+        // a worker that failed in the middle of a request is out of sync
+        boolean ok = false;
+        try {
+            List<Expression<Boolean>> ret = w.query(vars, exprsn);
+            ok = true;
+            return ret;
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Solver worker failed, restarting", ex);
+            return null;
+        } finally {
+            if (!ok) {
+                w.restart();
+            }
+            if (!closed) {
+                idle.add(w);
+            }
+        }
+    }
+
+    /**
+     * waits for an idle worker. Waiting callers fail once the pool is
+     * closed.
+     */
+    private Worker take() throws InterruptedException {
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("Worker pool is closed");
+            }
+            Worker w = idle.poll(100, TimeUnit.MILLISECONDS);
+            if (w != null) {
+                return w;
+            }
+        }
+    }
+
+    /**
+     * @return number of workers restarted after a crash or timeout
+     */
+    public long getRestartCount() {
+        return restarts.get();
+    }
+
+    /**
+     * terminates the worker processes. Solvers sharing this pool cannot
+     * use it any more; {@link #open(Properties)} starts a new pool.
+     */
+    public void close() {
+        synchronized (open) {
+            if (open.get(key) == this) {
+                open.remove(key);
+            }
+        }
+        closed = true;
+        watchdog.shutdownNow();
+        synchronized (workers) {
+            for (Worker w : workers) {
+                w.destroy();
+            }
+        }
+    }
+
+    /**
+     * kills all workers as if they crashed, for testing restarts.
+     */
+    void kill() throws InterruptedException {
+        synchronized (workers) {
+            for (Worker w : workers) {
+                w.destroy();
+                w.process.waitFor();
+            }
+        }
+    }
+
+    private static String classpath() {
+        Set<String> entries = new LinkedHashSet<>();
+        for (Class<?> c : new Class<?>[]{SolverWorker.class, Expression.class, Script.class}) {
+            try {
+                entries.add(new File(c.getProtectionDomain().getCodeSource()
+                        .getLocation().toURI()).getPath());
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Cannot locate classes of " + c, ex);
+            }
+        }
+        StringBuilder cp = new StringBuilder();
+        for (String e : entries) {
+            if (cp.length() > 0) {
+                cp.append(File.pathSeparator);
+            }
+            cp.append(e);
+        }
+        return cp.toString();
+    }
+
+    private class Worker {
+
+        private Process process;
+
+        private DataInputStream in;
+
+        private DataOutputStream out;
+
+        Worker() throws IOException {
+            start();
+        }
+
+        private void start() throws IOException {
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+            process = pb.start();
+            in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            WorkerProtocol.writeConfig(out, solverConfig);
+            out.flush();
+        }
+
+        List<Expression<Boolean>> query(Collection<Variable<?>> vars,
+                List<Expression<Boolean>> exprsn) throws IOException {
+            if (!isRunning()) {
+                logger.warning("Solver worker died while idle, restarting");
+                restart();
+            }
+            // encode the whole request first, so that a failure while
+            // encoding does not leave a partial request on the stream
+            ByteBuffer request = ExpressionWriter.write(exprsn);
+            ScheduledFuture<?> kill = null;
+            if (timeout > 0) {
+                final Process p = process;
+                kill = watchdog.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        logger.warning("Solver worker timed out");
+                        p.destroy();
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+            }
+            try {
+                WorkerProtocol.writeMessage(out, request);
+                out.flush();
+                switch (in.readByte()) {
+                    case WorkerProtocol.INTERPOLANTS:
+                        return WorkerProtocol.readExpressions(
+                                WorkerProtocol.readMessage(in), vars);
+                    case WorkerProtocol.NO_INTERPOLANTS:
+                        return null;
+                    default:
+                        logger.severe(WorkerProtocol.readString(in));
+                        return null;
+                }
+            } finally {
+                if (kill != null) {
+                    kill.cancel(false);
+                }
+            }
+        }
+
+        boolean isRunning() {
+            try {
+                process.exitValue();
+                return false;
+            } catch (IllegalThreadStateException ex) {
+                return true;
+            }
+        }
+
+        void restart() {
+            destroy();
+            if (closed) {
+                return;
+            }
+            restarts.incrementAndGet();
+            try {
+                start();
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Cannot restart solver worker", ex);
+            }
+        }
+
+        void destroy() {
+            process.destroy();
+        }
+    }
+}
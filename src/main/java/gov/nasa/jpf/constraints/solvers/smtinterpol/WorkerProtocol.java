@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Messages exchanged between {@link WorkerPool} and {@link SolverWorker}.
+ *
+ * When a worker starts, it first reads its solver configuration. After
+ * that, a request is the partitions of an interpolation query in the
+ * format of {@link ExpressionWriter}, which carries its own variable
+ * table. A response is a status byte followed by the interpolants in the
+ * same format or an error message. Unlike SMT-LIB text, the binary format
+ * reads back every operator, e.g., Java's truncating division, as a single
+ * node.
+ */
+final class WorkerProtocol {
+
+    static final byte INTERPOLANTS = 0;
+
+    static final byte NO_INTERPOLANTS = 1;
+
+    static final byte ERROR = 2;
+
+    private WorkerProtocol() {
+    }
+
+    static void writeConfig(DataOutputStream out, Properties config) throws IOException {
+        out.writeInt(config.size());
+        for (String name : config.stringPropertyNames()) {
+            out.writeUTF(name);
+            writeString(out, config.getProperty(name));
+        }
+    }
+
+    static Properties readConfig(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        Properties config = new Properties();
+        for (int i = 0; i < n; i++) {
+            String name = in.readUTF();
+            config.setProperty(name, readString(in));
+        }
+        return config;
+    }
+
+    /**
+     * writes expressions encoded by {@link ExpressionWriter}. Encoding
+     * before writing means that a failure to encode never leaves a partial
+     * message on the stream.
+     */
+    static void writeMessage(DataOutputStream out, ByteBuffer message)
+            throws IOException {
+        out.writeInt(message.remaining());
+        out.write(message.array(), message.arrayOffset() + message.position(),
+                message.remaining());
+    }
+
+    /**
+     * reads a message written by {@link #writeMessage}, without decoding
+     * it, so that the stream stays in sync if decoding fails.
+     */
+    static ByteBuffer readMessage(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * @param vars variables to use for equal variables in the message
+     */
+    @SuppressWarnings("unchecked")
+    static List<Expression<Boolean>> readExpressions(ByteBuffer message,
+            Collection<? extends Variable<?>> vars) throws IOException {
+        List<Expression<?>> exprsn = new ExpressionReader(
+                vars, new ExpressionFactory()).read(message);
+        List<Expression<Boolean>> ret = new ArrayList<>(exprsn.size());
+        for (Expression<?> e : exprsn) {
+            ret.add((Expression<Boolean>) e);
+        }
+        return ret;
+    }
+
+    // writeUTF is limited to 64k, configuration values and messages are not
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
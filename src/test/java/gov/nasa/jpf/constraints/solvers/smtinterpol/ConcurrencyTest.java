@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.Negation;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import gov.nasa.jpf.constraints.util.ExpressionUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class ConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    private static final int QUERIES = 50;
+
+    private static final Variable x = new Variable(BuiltinTypes.SINT32, "x");
+    private static final Variable y = new Variable(BuiltinTypes.SINT32, "y");
+
+    /**
+     * x > y, x = k, y >= k
+     */
+    static List<Expression<Boolean>> query(int k) {
+        Constant c = new Constant(BuiltinTypes.SINT32, k);
+        List<Expression<Boolean>> terms = new ArrayList<>();
+        terms.add(new NumericBooleanExpression(x, NumericComparator.GT, y));
+        terms.add(new NumericBooleanExpression(x, NumericComparator.EQ, c));
+        terms.add(new NumericBooleanExpression(y, NumericComparator.GE, c));
+        return terms;
+    }
+
+    /**
+     * checks I_{k-1} /\ phi_k => I_k with I_0 = true and I_n = false.
+     */
+    static boolean isSequenceInterpolant(List<Expression<Boolean>> phis,
+            List<Expression<Boolean>> itps) {
+        Expression<Boolean> prev = ExpressionUtil.TRUE;
+        for (int k = 0; k < phis.size(); k++) {
+            Expression<Boolean> next = k < itps.size() ? itps.get(k) : ExpressionUtil.FALSE;
+            Script s = new SMTInterpol();
+            s.setLogic(Logics.QF_LIA);
+            SMTInterpolExpressionGenerator gen = new SMTInterpolExpressionGenerator(s);
+            s.assertTerm(gen.generateAssertion(ExpressionUtil.and(
+                    prev, phis.get(k), new Negation(next))));
+            boolean valid = s.checkSat() == Script.LBool.UNSAT;
+            s.exit();
+            if (!valid) {
+                return false;
+            }
+            prev = next;
+        }
+        return true;
+    }
+
+    @Test
+    public void testSharedSolver() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("smtinterpol.pool.size", "4");
+        final SMTInterpolSolver solver = new SMTInterpolSolver(config);
+
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t * QUERIES;
+            results.add(threads.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    for (int i = 0; i < QUERIES; i++) {
+                        List<Expression<Boolean>> phis = query(offset + i);
+                        List<Expression<Boolean>> itps = solver.getInterpolants(phis);
+                        assertNotNull(itps);
+                        assertEquals(itps.size(), phis.size() - 1);
+                        assertTrue(isSequenceInterpolant(phis, itps));
+                    }
+                    return true;
+                }
+            }));
+        }
+        for (Future<Boolean> f : results) {
+            assertTrue(f.get());
+        }
+        threads.shutdown();
+
+        assertEquals(solver.getQueryCount(), THREADS * QUERIES);
+        assertEquals(solver.getUnsatCount(), THREADS * QUERIES);
+        assertEquals(solver.getFailureCount(), 0);
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        SMTInterpolSolver solver = new SMTInterpolSolver();
+        List<List<Expression<Boolean>>> queries = new ArrayList<>();
+        List<Future<List<Expression<Boolean>>>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS * QUERIES; i++) {
+            queries.add(query(i));
+            results.add(solver.getInterpolantsAsync(queries.get(i)));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertTrue(isSequenceInterpolant(queries.get(i), results.get(i).get()));
+        }
+    }
+}
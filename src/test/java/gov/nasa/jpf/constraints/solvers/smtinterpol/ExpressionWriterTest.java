@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.CastExpression;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.IfThenElse;
+import gov.nasa.jpf.constraints.expressions.LogicalOperator;
+import gov.nasa.jpf.constraints.expressions.Negation;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.expressions.PropositionalCompound;
+import gov.nasa.jpf.constraints.expressions.UnaryMinus;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import gov.nasa.jpf.constraints.util.ExpressionUtil;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class ExpressionWriterTest {
+
+    private final Variable<Integer> x = new Variable<>(BuiltinTypes.SINT32, "x");
+    private final Variable<Integer> y = new Variable<>(BuiltinTypes.SINT32, "y");
+    private final Variable<Boolean> b = new Variable<>(BuiltinTypes.BOOL, "b");
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Expression<Integer> sum = new NumericCompound<>(x, NumericOperator.PLUS,
+                new UnaryMinus<>(new Constant<>(BuiltinTypes.SINT32, -7)));
+        Expression<Boolean> e1 = new PropositionalCompound(
+                new NumericBooleanExpression(sum, NumericComparator.LE, y),
+                LogicalOperator.IMPLY,
+                new Negation(b));
+        Expression<Boolean> e2 = new NumericBooleanExpression(
+                new IfThenElse<>(b, sum, new NumericCompound<>(y, NumericOperator.REM, x)),
+                NumericComparator.NE,
+                new Constant<>(BuiltinTypes.INTEGER, BigInteger.ONE.shiftLeft(80)));
+        List<Expression<Boolean>> in = Arrays.asList(e1, e2, ExpressionUtil.TRUE);
+
+        List<Expression<?>> out = new ExpressionReader(Arrays.asList(x, y),
+                new ExpressionFactory()).read(ExpressionWriter.write(in));
+        assertEquals(out, in);
+
+        // variables are resolved, sharing is preserved
+        NumericBooleanExpression cmp = (NumericBooleanExpression) out.get(0).getChildren()[0];
+        assertSame(cmp.getRight(), y);
+        IfThenElse<?> ite = (IfThenElse<?>) out.get(1).getChildren()[0];
+        assertSame(ite.getThen(), cmp.getLeft());
+    }
+
+    @Test
+    public void testCast() throws IOException {
+        Expression<Byte> narrow = new CastExpression<>(x, BuiltinTypes.SINT8);
+        Expression<Boolean> e = new NumericBooleanExpression(
+                new CastExpression<>(narrow, BuiltinTypes.SINT64), NumericComparator.EQ,
+                new Constant<>(BuiltinTypes.SINT64, -56L));
+        List<Expression<Boolean>> in = Arrays.asList(e,
+                new NumericBooleanExpression(narrow, NumericComparator.GT,
+                        new Constant<>(BuiltinTypes.SINT8, (byte) 3)));
+
+        List<Expression<?>> out = new ExpressionReader().read(ExpressionWriter.write(in));
+        assertEquals(out, in);
+        CastExpression<?, ?> c = (CastExpression<?, ?>) out.get(1).getChildren()[0];
+        assertEquals(c.getType(), BuiltinTypes.SINT8);
+        assertSame(((CastExpression<?, ?>) out.get(0).getChildren()[0]).getCasted(), c);
+    }
+
+    @Test
+    public void testDeepChain() throws IOException {
+        Expression<Integer> e = x;
+        for (int i = 0; i < 10000; i++) {
+            e = new NumericCompound<>(e, NumericOperator.PLUS, y);
+        }
+        List<Expression<?>> in = new ArrayList<>();
+        in.add(new NumericBooleanExpression(e, NumericComparator.GT, x));
+        ByteBuffer buf = ExpressionWriter.write(in);
+        // tag, operator and two one-byte references per node
+        assertTrue(buf.remaining() < 5 * 10010);
+        assertEquals(new ExpressionReader().read(buf), in);
+        assertEquals(buf.remaining(), 0);
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testTruncated() throws IOException {
+        List<Expression<?>> in = new ArrayList<>();
+        in.add(new NumericBooleanExpression(x, NumericComparator.GT, y));
+        ByteBuffer buf = ExpressionWriter.write(in);
+        buf.limit(buf.limit() - 2);
+        new ExpressionReader().read(buf);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.util.ExpressionUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class InterpolantValidatorTest {
+
+    private static final int QUERIES = 50;
+
+    @Test
+    public void testValidation() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("smtinterpol.validate", "true");
+        config.setProperty("smtinterpol.validate.batch", "4");
+        SMTInterpolSolver solver = new SMTInterpolSolver(config);
+        InterpolantValidator validator = solver.getValidator();
+        final List<Integer> invalid = new ArrayList<>();
+        validator.setCallback(new ValidationCallback() {
+            @Override
+            public void invalid(List<Expression<Boolean>> partitions,
+                    List<Expression<Boolean>> interpolants, int index) {
+                synchronized (invalid) {
+                    invalid.add(index);
+                }
+            }
+
+            @Override
+            public void failed(List<Expression<Boolean>> partitions,
+                    List<Expression<Boolean>> interpolants, Throwable error) {
+                throw new AssertionError(error);
+            }
+        });
+
+        for (int i = 0; i < QUERIES; i++) {
+            assertNotNull(solver.getInterpolants(ConcurrencyTest.query(i)));
+        }
+        // true, true is not a sequence interpolant: true /\ y >= c is sat
+        validator.submit(ConcurrencyTest.query(0),
+                Arrays.<Expression<Boolean>>asList(ExpressionUtil.TRUE, ExpressionUtil.TRUE));
+        assertTrue(validator.close(1, TimeUnit.MINUTES));
+
+        assertEquals(validator.getValidCount(), QUERIES);
+        assertEquals(validator.getInvalidCount(), 1);
+        assertEquals(validator.getFailedCount(), 0);
+        assertEquals(invalid, Arrays.asList(2));
+
+        // interpolants computed after closing are not validated
+        solver.close();
+        assertNotNull(solver.getInterpolants(ConcurrencyTest.query(0)));
+        assertEquals(validator.getDroppedCount(), 1);
+    }
+
+    @Test
+    public void testThrowingCallback() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("smtinterpol.validate", "true");
+        config.setProperty("smtinterpol.validate.threads", "1");
+        config.setProperty("smtinterpol.validate.batch", "1");
+        InterpolantValidator validator = new SMTInterpolSolver(config).getValidator();
+        validator.setCallback(new ValidationCallback() {
+            @Override
+            public void invalid(List<Expression<Boolean>> partitions,
+                    List<Expression<Boolean>> interpolants, int index) {
+                throw new IllegalStateException("callback");
+            }
+
+            @Override
+            public void failed(List<Expression<Boolean>> partitions,
+                    List<Expression<Boolean>> interpolants, Throwable error) {
+                throw new AssertionError(error);
+            }
+        });
+
+        // every sequence borrows the only script again: a script kept by a
+        // failing callback would block the next one
+        for (int i = 0; i < 3; i++) {
+            validator.submit(ConcurrencyTest.query(i),
+                    Arrays.<Expression<Boolean>>asList(ExpressionUtil.TRUE, ExpressionUtil.TRUE));
+        }
+        assertTrue(validator.close(1, TimeUnit.MINUTES));
+        assertEquals(validator.getInvalidCount(), 3);
+        assertEquals(validator.getFailedCount(), 0);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class IterateInterpolantsTest {
+
+    @Test
+    public void testIterate() {
+        SMTInterpolSolver solver = new SMTInterpolSolver();
+        List<Expression<Boolean>> phis = ConcurrencyTest.query(3);
+        Iterator<InterpolantResult> it = solver.iterateInterpolants(phis);
+        List<Expression<Boolean>> itps = new ArrayList<>();
+        while (it.hasNext()) {
+            InterpolantResult r = it.next();
+            assertEquals(r.getIndex(), itps.size());
+            assertTrue(r.hasInterpolant());
+            itps.add(r.getInterpolant());
+        }
+        assertEquals(itps.size(), phis.size() - 1);
+        assertTrue(ConcurrencyTest.isSequenceInterpolant(phis, itps));
+    }
+
+    @Test
+    public void testFailedElement() {
+        SMTInterpolSolver solver = new SMTInterpolSolver();
+        Set<Variable<?>> vars = new HashSet<>();
+        vars.add(new Variable<>(BuiltinTypes.SINT32, "x"));
+        // z is not a variable of the query
+        String[] text = {"(<= x 5)", "(<= x z)", "(>= x 0)"};
+
+        Iterator<InterpolantResult> it = solver.iterate(text, vars);
+        InterpolantResult r = it.next();
+        assertEquals(r.getIndex(), 0);
+        assertTrue(r.hasInterpolant());
+        r = it.next();
+        assertEquals(r.getIndex(), 1);
+        assertFalse(r.hasInterpolant());
+        assertNotNull(r.getError());
+        r = it.next();
+        assertEquals(r.getIndex(), 2);
+        assertTrue(r.hasInterpolant());
+        assertFalse(it.hasNext());
+        assertEquals(solver.getFailureCount(), 1);
+
+        assertNull(SMTInterpolSolver.collect(solver.iterate(text, vars)));
+        assertEquals(solver.getFailureCount(), 2);
+    }
+}
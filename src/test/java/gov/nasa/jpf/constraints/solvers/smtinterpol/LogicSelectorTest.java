@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.LogicalOperator;
+import gov.nasa.jpf.constraints.expressions.Negation;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.expressions.PropositionalCompound;
+import gov.nasa.jpf.constraints.expressions.UnaryMinus;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class LogicSelectorTest {
+
+    private final Variable<Boolean> a = new Variable<>(BuiltinTypes.BOOL, "a");
+    private final Variable<Boolean> b = new Variable<>(BuiltinTypes.BOOL, "b");
+    private final Variable<Integer> x = new Variable<>(BuiltinTypes.SINT32, "x");
+    private final Variable<Integer> y = new Variable<>(BuiltinTypes.SINT32, "y");
+    private final Constant<Integer> c = new Constant<>(BuiltinTypes.SINT32, 3);
+    private final Constant<Integer> two = new Constant<>(BuiltinTypes.SINT32, 2);
+
+    private static Logics select(Expression<Boolean>... exprsn) {
+        return LogicSelector.select(Arrays.asList(exprsn));
+    }
+
+    private Expression<Boolean> cmp(Expression<Integer> l, NumericComparator cmp,
+            Expression<Integer> r) {
+        return new NumericBooleanExpression(l, cmp, r);
+    }
+
+    private Expression<Integer> op(Expression<Integer> l, NumericOperator op,
+            Expression<Integer> r) {
+        return new NumericCompound<>(l, op, r);
+    }
+
+    @Test
+    public void testPropositional() {
+        assertEquals(select(a, new Negation(a)), Logics.QF_UF);
+        assertEquals(select(new PropositionalCompound(a, LogicalOperator.IMPLY, b),
+                new PropositionalCompound(a, LogicalOperator.AND, new Negation(b))),
+                Logics.QF_UF);
+    }
+
+    @Test
+    public void testDifference() {
+        assertEquals(select(cmp(op(x, NumericOperator.MINUS, y), NumericComparator.LE, c)),
+                Logics.QF_IDL);
+        assertEquals(select(cmp(x, NumericComparator.GT, c),
+                cmp(y, NumericComparator.EQ, c)), Logics.QF_IDL);
+        // x ~ y + c, -y + x ~ c, and a boolean variable in between
+        assertEquals(select(cmp(x, NumericComparator.LT, op(y, NumericOperator.PLUS, c)),
+                new PropositionalCompound(a, LogicalOperator.OR, cmp(
+                        op(new UnaryMinus<>(y), NumericOperator.PLUS, x),
+                        NumericComparator.GE, c))), Logics.QF_IDL);
+    }
+
+    @Test
+    public void testLinear() {
+        assertEquals(select(cmp(op(x, NumericOperator.PLUS, y), NumericComparator.LE, c)),
+                Logics.QF_LIA);
+        assertEquals(select(cmp(op(two, NumericOperator.MUL, x), NumericComparator.EQ, y)),
+                Logics.QF_LIA);
+        // a single atom outside IDL decides
+        assertEquals(select(cmp(x, NumericComparator.GT, c),
+                cmp(op(x, NumericOperator.PLUS, x), NumericComparator.EQ, c)), Logics.QF_LIA);
+    }
+
+    @Test
+    public void testInterpolationQF_UF() {
+        List<Expression<Boolean>> query = Arrays.<Expression<Boolean>>asList(
+                new PropositionalCompound(a, LogicalOperator.AND, b),
+                new PropositionalCompound(new Negation(a), LogicalOperator.OR, new Negation(b)));
+        assertEquals(LogicSelector.select(query), Logics.QF_UF);
+        interpolate(query);
+    }
+
+    @Test
+    public void testInterpolationQF_IDL() {
+        List<Expression<Boolean>> query = Arrays.<Expression<Boolean>>asList(
+                cmp(op(x, NumericOperator.MINUS, y), NumericComparator.GT, c),
+                cmp(x, NumericComparator.EQ, c),
+                cmp(y, NumericComparator.GE, c));
+        assertEquals(LogicSelector.select(query), Logics.QF_IDL);
+        interpolate(query);
+    }
+
+    private static void interpolate(List<Expression<Boolean>> query) {
+        SMTInterpolSolver solver = new SMTInterpolSolver();
+        List<Expression<Boolean>> itps = solver.getInterpolants(query);
+        assertNotNull(itps);
+        assertEquals(itps.size(), query.size() - 1);
+        assertTrue(ConcurrencyTest.isSequenceInterpolant(query, itps));
+        assertEquals(solver.getFallbackCount(), 0);
+        assertEquals(solver.getFailureCount(), 0);
+    }
+}
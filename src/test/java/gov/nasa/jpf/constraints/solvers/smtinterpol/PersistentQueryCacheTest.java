@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PersistentQueryCacheTest {
+
+    private static final long SIZE = 1 << 20;
+
+    private File file;
+
+    @BeforeMethod
+    public void createFile() throws IOException {
+        file = File.createTempFile("cache", ".bin");
+        file.delete();
+    }
+
+    @AfterMethod
+    public void deleteFile() {
+        file.delete();
+    }
+
+    private static byte[] key(int i) {
+        byte[] key = new byte[32];
+        Arrays.fill(key, (byte) i);
+        return key;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        PersistentQueryCache cache = new PersistentQueryCache(file, SIZE);
+        List<String> itps = Arrays.asList("(< x y)", "(= y 5)");
+        cache.store(key(1), true, itps);
+        cache.store(key(2), false, Collections.<String>emptyList());
+
+        PersistentQueryCache.Entry e = cache.lookup(key(1));
+        assertNotNull(e);
+        assertTrue(e.isUnsat());
+        assertEquals(e.getInterpolants(), itps);
+        assertFalse(cache.lookup(key(2)).isUnsat());
+        assertNull(cache.lookup(key(3)));
+
+        // reopened from disk
+        e = new PersistentQueryCache(file, SIZE).lookup(key(1));
+        assertNotNull(e);
+        assertEquals(e.getInterpolants(), itps);
+    }
+
+    @Test
+    public void testTwoInstances() throws IOException {
+        PersistentQueryCache first = new PersistentQueryCache(file, SIZE);
+        PersistentQueryCache second = new PersistentQueryCache(file, SIZE);
+        assertNull(second.lookup(key(1)));
+
+        first.store(key(1), true, Arrays.asList("false"));
+        second.store(key(2), true, Arrays.asList("true"));
+        // a store of a key another instance added is skipped
+        second.store(key(1), true, Arrays.asList("true"));
+
+        assertEquals(second.lookup(key(1)).getInterpolants(), Arrays.asList("false"));
+        assertEquals(first.lookup(key(2)).getInterpolants(), Arrays.asList("true"));
+        assertEquals(first.lookup(key(1)).getInterpolants(), Arrays.asList("false"));
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        PersistentQueryCache cache = new PersistentQueryCache(file, SIZE);
+        cache.store(key(1), true, Arrays.asList("false"));
+        long valid = file.length();
+
+        // a writer crashed after writing part of a record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(valid);
+            raf.writeInt(100);
+            raf.writeInt(0);
+            raf.write(key(2));
+        }
+        PersistentQueryCache reader = new PersistentQueryCache(file, SIZE);
+        assertEquals(file.length(), valid);
+        assertNotNull(reader.lookup(key(1)));
+        assertNull(reader.lookup(key(2)));
+
+        // invalid length and a record with a wrong checksum
+        for (int length : new int[]{-7, 3}) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(valid);
+                raf.writeInt(length);
+                raf.writeInt(0);
+                raf.write(new byte[40]);
+            }
+            assertNull(reader.lookup(key(2)));
+            assertNotNull(reader.lookup(key(1)));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(valid);
+            raf.writeInt(37);
+            raf.writeInt(12345);
+            raf.write(key(2));
+            raf.write(new byte[5]);
+        }
+        assertNull(reader.lookup(key(2)));
+
+        // the next store cuts off the tail and appends after the valid part
+        reader.store(key(3), true, Arrays.asList("true"));
+        assertEquals(cache.lookup(key(3)).getInterpolants(), Arrays.asList("true"));
+        assertNull(cache.lookup(key(2)));
+        assertNotNull(new PersistentQueryCache(file, SIZE).lookup(key(1)));
+    }
+}
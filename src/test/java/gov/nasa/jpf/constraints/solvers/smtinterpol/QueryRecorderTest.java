@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class QueryRecorderTest {
+
+    @Test
+    public void testQuote() {
+        assertEquals(QueryRecorder.quote("x_1"), "x_1");
+        assertEquals(QueryRecorder.quote("a.b?"), "a.b?");
+        assertEquals(QueryRecorder.quote("1x"), "|1x|");
+        assertEquals(QueryRecorder.quote("x y"), "|x y|");
+        assertEquals(QueryRecorder.quote("ä"), "|ä|");
+        assertEquals(QueryRecorder.quote(""), "||");
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        File dir = Files.createTempDirectory("traces").toFile();
+        Properties config = new Properties();
+        config.setProperty("smtinterpol.trace.dir", dir.getPath());
+
+        Variable<Integer> x = new Variable<>(BuiltinTypes.SINT32, "0x");
+        Variable<Integer> y = new Variable<>(BuiltinTypes.SINT32, "y");
+        Constant<Integer> c = new Constant<>(BuiltinTypes.SINT32, 5);
+        List<Expression<Boolean>> query = Arrays.<Expression<Boolean>>asList(
+                new NumericBooleanExpression(x, NumericComparator.GT, y),
+                new NumericBooleanExpression(x, NumericComparator.EQ, c),
+                new NumericBooleanExpression(y, NumericComparator.GE, c));
+
+        // solvers recording to one directory share the recorder
+        SMTInterpolSolver first = new SMTInterpolSolver(config);
+        SMTInterpolSolver second = new SMTInterpolSolver(config);
+        assertSame(first.getRecorder(), second.getRecorder());
+        assertNotNull(first.getInterpolants(query));
+        assertNotNull(second.getInterpolants(query));
+        first.close();
+        second.close();
+
+        File[] traces = dir.listFiles();
+        assertEquals(traces.length, 2);
+        for (File f : traces) {
+            String text = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+            assertTrue(text.contains("(declare-fun |0x| () Int)"), text);
+            assertTrue(text.contains("(get-interpolants"), text);
+            assertTrue(TraceReplay.replay(f) > 0);
+            f.delete();
+        }
+        dir.delete();
+    }
+}
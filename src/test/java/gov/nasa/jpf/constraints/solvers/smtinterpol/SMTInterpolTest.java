@@ -26,16 +26,23 @@ import de.uni_freiburg.informatik.ultimate.logic.Term;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
 import gov.nasa.jpf.constraints.api.Expression;
 import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.CastExpression;
 import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.IfThenElse;
 import gov.nasa.jpf.constraints.expressions.LogicalOperator;
+import gov.nasa.jpf.constraints.expressions.Negation;
 import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
 import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
 import gov.nasa.jpf.constraints.expressions.PropositionalCompound;
 import gov.nasa.jpf.constraints.types.BuiltinTypes;
 import gov.nasa.jpf.constraints.util.ExpressionUtil;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
 import junit.framework.TestCase;
 
 import org.testng.annotations.Test;
@@ -185,4 +192,138 @@ public class SMTInterpolTest {
 
         
     }
+
+    @Test
+    public void testImplications() {
+        System.out.println("--- implications");
+        Variable x = new Variable(BuiltinTypes.SINT32 , "x");
+        Variable y = new Variable(BuiltinTypes.SINT32 , "y");
+        Constant zero = Constant.createParsed(BuiltinTypes.SINT32, "0");
+
+        Expression<Boolean> xPos = new NumericBooleanExpression(x, NumericComparator.GT, zero);
+        Expression<Boolean> xNonNeg = new NumericBooleanExpression(x, NumericComparator.GE, zero);
+        Expression<Boolean> yPos = new NumericBooleanExpression(y, NumericComparator.GT, zero);
+        Expression<Boolean> xGtY = new NumericBooleanExpression(x, NumericComparator.GT, y);
+
+        SMTInterpolSolver solver = new SMTInterpolSolver();
+        boolean[][] res = solver.checkImplications(
+                Arrays.asList(xPos, xNonNeg),
+                Arrays.asList(xNonNeg, xPos, yPos));
+        TestCase.assertTrue(res[0][0]);
+        TestCase.assertTrue(res[0][1]);
+        TestCase.assertFalse(res[0][2]);
+        TestCase.assertTrue(res[1][0]);
+        TestCase.assertFalse(res[1][1]);
+        TestCase.assertFalse(res[1][2]);
+
+        // with context y > 0: x > y implies x > 0
+        res = solver.checkImplications(yPos,
+                Arrays.asList(xGtY), Arrays.asList(xPos));
+        TestCase.assertTrue(res[0][0]);
+    }
+
+    @Test
+    public void testOperators() {
+        System.out.println("--- operators");
+        Variable x = new Variable(BuiltinTypes.SINT32 , "x");
+        Variable y = new Variable(BuiltinTypes.SINT32 , "y");
+        Variable b = new Variable(BuiltinTypes.BOOL , "b");
+
+        // (byte) 200 == -56
+        Expression<Boolean> cast = new NumericBooleanExpression(
+                new CastExpression(x, BuiltinTypes.SINT8), NumericComparator.EQ,
+                Constant.createParsed(BuiltinTypes.SINT8, "-56"));
+        Expression<Boolean> ite = new NumericBooleanExpression(y, NumericComparator.EQ,
+                new IfThenElse(b, new NumericCompound(x, NumericOperator.DIV,
+                        Constant.createParsed(BuiltinTypes.SINT32, "7")),
+                        new NumericCompound(x, NumericOperator.REM,
+                        Constant.createParsed(BuiltinTypes.SINT32, "7"))));
+        Expression<Boolean> imply = new PropositionalCompound(
+                b, LogicalOperator.IMPLY, new NumericBooleanExpression(
+                        y, NumericComparator.EQ, Constant.createParsed(BuiltinTypes.SINT32, "28")));
+        Expression<Boolean> xor = new PropositionalCompound(
+                b, LogicalOperator.XOR, new NumericBooleanExpression(
+                        y, NumericComparator.EQ, Constant.createParsed(BuiltinTypes.SINT32, "4")));
+        Expression<Boolean> x200 = new NumericBooleanExpression(
+                x, NumericComparator.EQ, Constant.createParsed(BuiltinTypes.SINT32, "200"));
+
+        SMTInterpolSolver solver = new SMTInterpolSolver();
+        // with b = false, x = 200 and y = 4 satisfy all of them
+        boolean[][] res = solver.checkImplications(new Negation(b),
+                Arrays.asList(ExpressionUtil.and(x200,
+                        new NumericBooleanExpression(y, NumericComparator.EQ,
+                                Constant.createParsed(BuiltinTypes.SINT32, "4")))),
+                Arrays.asList(cast, ite, imply, xor, new Negation(xor)));
+        TestCase.assertTrue(res[0][0]);
+        TestCase.assertTrue(res[0][1]);
+        TestCase.assertTrue(res[0][2]);
+        TestCase.assertTrue(res[0][3]);
+        TestCase.assertFalse(res[0][4]);
+    }
+
+    @Test
+    public void testDivRem() {
+        System.out.println("--- div/rem");
+        Variable x = new Variable(BuiltinTypes.SINT32 , "x");
+        Variable q = new Variable(BuiltinTypes.SINT32 , "q");
+        Variable r = new Variable(BuiltinTypes.SINT32 , "r");
+
+        SMTInterpolSolver solver = new SMTInterpolSolver();
+        // truncating like Java, for negative dividends and divisors
+        int[][] cases = {{-7, 2}, {7, -2}, {-7, -2}, {7, 2}};
+        for (int[] c : cases) {
+            Constant a = Constant.createParsed(BuiltinTypes.SINT32, "" + c[0]);
+            Constant b = Constant.createParsed(BuiltinTypes.SINT32, "" + c[1]);
+            Expression<Boolean> ctx = ExpressionUtil.and(
+                    new NumericBooleanExpression(x, NumericComparator.EQ, a),
+                    new NumericBooleanExpression(q, NumericComparator.EQ,
+                            new NumericCompound(x, NumericOperator.DIV, b)),
+                    new NumericBooleanExpression(r, NumericComparator.EQ,
+                            new NumericCompound(x, NumericOperator.REM, b)));
+            boolean[][] res = solver.checkImplications(ctx,
+                    Arrays.<Expression<Boolean>>asList(ExpressionUtil.TRUE),
+                    Arrays.<Expression<Boolean>>asList(
+                            new NumericBooleanExpression(q, NumericComparator.EQ,
+                                    Constant.createParsed(BuiltinTypes.SINT32, "" + (c[0] / c[1]))),
+                            new NumericBooleanExpression(r, NumericComparator.EQ,
+                                    Constant.createParsed(BuiltinTypes.SINT32, "" + (c[0] % c[1])))));
+            TestCase.assertTrue(Arrays.toString(c), res[0][0]);
+            TestCase.assertTrue(Arrays.toString(c), res[0][1]);
+        }
+    }
+
+    @Test
+    public void testReduce() {
+        System.out.println("--- reduce");
+        Variable x = new Variable(BuiltinTypes.SINT32 , "x");
+        Variable y = new Variable(BuiltinTypes.SINT32 , "y");
+        Variable z = new Variable(BuiltinTypes.SINT32 , "z");
+        Variable w = new Variable(BuiltinTypes.SINT32 , "w");
+        Constant zero = Constant.createParsed(BuiltinTypes.SINT32, "0");
+        Constant five = Constant.createParsed(BuiltinTypes.SINT32, "5");
+
+        // z and w are irrelevant, the second partition is not in the core
+        List<Expression<Boolean>> phis = Arrays.<Expression<Boolean>>asList(
+                ExpressionUtil.and(
+                        new NumericBooleanExpression(x, NumericComparator.GT, y),
+                        new NumericBooleanExpression(z, NumericComparator.EQ, five)),
+                ExpressionUtil.and(
+                        new NumericBooleanExpression(w, NumericComparator.GE, zero),
+                        new NumericBooleanExpression(w, NumericComparator.LE, five)),
+                new NumericBooleanExpression(x, NumericComparator.EQ, five),
+                ExpressionUtil.and(
+                        new NumericBooleanExpression(y, NumericComparator.GE, five),
+                        new NumericBooleanExpression(z, NumericComparator.GT, zero)));
+
+        Properties config = new Properties();
+        config.setProperty("smtinterpol.core.reduce", "true");
+        SMTInterpolSolver solver = new SMTInterpolSolver(config);
+        List<Expression<Boolean>> itps = solver.getInterpolants(phis);
+        System.out.println(itps);
+        TestCase.assertNotNull(itps);
+        TestCase.assertEquals(phis.size() - 1, itps.size());
+        // interpolants of the restricted partitions, also of the one
+        // restricted to true, are interpolants of the original ones
+        TestCase.assertTrue(ConcurrencyTest.isSequenceInterpolant(phis, itps));
+    }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import java.util.List;
+import java.util.Properties;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class ScriptPoolTest {
+
+    @Test
+    public void testRecycle() {
+        Properties config = new Properties();
+        config.setProperty("smtinterpol.pool.size", "1");
+        config.setProperty("smtinterpol.pool.recycle.uses", "3");
+        SMTInterpolSolver solver = new SMTInterpolSolver(config);
+        for (int i = 0; i < 10; i++) {
+            List<Expression<Boolean>> phis = ConcurrencyTest.query(i);
+            assertTrue(ConcurrencyTest.isSequenceInterpolant(
+                    phis, solver.getInterpolants(phis)));
+        }
+        assertEquals(solver.getRecycledCount(), 3);
+        // only the last query counts: x, y, c, and three atoms
+        assertEquals(solver.getScriptWeight(), 6);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Valuation;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.solvers.smtinterpol.exception.TermParserException;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+import org.testng.annotations.Test;
+
+public class StreamingTermParserTest {
+
+    private final Variable<Integer> x = new Variable<>(BuiltinTypes.SINT32, "x");
+    private final Variable<Integer> y = new Variable<>(BuiltinTypes.SINT32, "y");
+
+    private StreamingTermParser parser(String input) {
+        return new StreamingTermParser(
+                new SMTLibTokenizer(new StringReader(input)), Arrays.asList(x, y));
+    }
+
+    private Object eval(Expression<?> e, int xv, int yv) {
+        Valuation val = new Valuation();
+        val.setValue(x, xv);
+        val.setValue(y, yv);
+        return e.evaluate(val);
+    }
+
+    @Test
+    public void testSequence() throws IOException, TermParserException {
+        StreamingTermParser p = parser(
+                "(<= x y)\n(and (>= x 0) (<= (+ x y 1) 5))\n(not (= x (- y)))");
+        Expression<?> e1 = p.next();
+        Expression<?> e2 = p.next();
+        Expression<?> e3 = p.next();
+        assertNull(p.next());
+
+        assertEquals(eval(e1, 1, 2), true);
+        assertEquals(eval(e1, 3, 2), false);
+        assertEquals(eval(e2, 2, 2), true);
+        assertEquals(eval(e2, 2, 3), false);
+        assertEquals(eval(e3, 2, -2), false);
+    }
+
+    @Test
+    public void testLet() throws IOException, TermParserException {
+        Expression<?> e = parser(
+                "(let ((.cse0 (+ x 1)) (.cse1 y)) "
+                + "(let ((.cse0 (- .cse0 .cse1))) (and (<= 0 .cse0) (<= .cse0 .cse1))))")
+                .next();
+        assertEquals(eval(e, 1, 1), true);
+        assertEquals(eval(e, 1, 0), false);
+        assertEquals(eval(e, 4, 2), false);
+    }
+
+    @Test
+    public void testIteDistinctNary() throws IOException, TermParserException {
+        StreamingTermParser p = parser(
+                "(= (ite (< x y) x y) 0) (distinct x y 0) (<= 0 x y 10)");
+        Expression<?> min = p.next();
+        Expression<?> distinct = p.next();
+        Expression<?> chain = p.next();
+
+        assertEquals(eval(min, 0, 5), true);
+        assertEquals(eval(min, 5, 0), true);
+        assertEquals(eval(min, 1, 5), false);
+        assertEquals(eval(distinct, 1, 2), true);
+        assertEquals(eval(distinct, 0, 2), false);
+        assertEquals(eval(chain, 3, 7), true);
+        assertEquals(eval(chain, 7, 3), false);
+    }
+
+    @Test
+    public void testArithmeticAndPropositional() throws IOException, TermParserException {
+        StreamingTermParser p = parser(
+                "(= (mod (* 3 x) 4) (div y 2)) (=> (> x 0) (> y 0) (> x y)) (xor (> x 0) (> y 0))");
+        Expression<?> arith = p.next();
+        Expression<?> imply = p.next();
+        Expression<?> xor = p.next();
+
+        assertEquals(eval(arith, 3, 2), true);
+        assertEquals(eval(arith, 3, 4), false);
+        assertEquals(eval(imply, 1, 1), false);
+        assertEquals(eval(imply, 2, 1), true);
+        assertEquals(eval(imply, 1, 0), true);
+        assertEquals(eval(xor, 1, 0), true);
+        assertEquals(eval(xor, 1, 1), false);
+    }
+
+    @Test
+    public void testDivMod() throws IOException, TermParserException {
+        // Euclidean, for constant and other divisors
+        StreamingTermParser p = parser("(div x y) (mod x y) (div x (- 2)) (mod x 3)");
+        Expression<?> div = p.next();
+        Expression<?> mod = p.next();
+        Expression<?> divNeg = p.next();
+        Expression<?> mod3 = p.next();
+        int[][] cases = {{7, 2}, {-7, 2}, {7, -2}, {-7, -2}, {6, -3}, {-6, 3}};
+        for (int[] c : cases) {
+            int abs = Math.abs(c[1]);
+            int m = ((c[0] % abs) + abs) % abs;
+            assertEquals(eval(mod, c[0], c[1]), m);
+            assertEquals(eval(div, c[0], c[1]), (c[0] - m) / c[1]);
+            assertEquals(eval(divNeg, c[0], c[1]), (c[0] - ((c[0] % 2) + 2) % 2) / -2);
+            assertEquals(eval(mod3, c[0], c[1]), ((c[0] % 3) + 3) % 3);
+        }
+
+        // printed DIV and REM read back with Java semantics
+        Expression<?> jdiv = parser(SMTLibPrinter.print(
+                new NumericCompound<>(x, NumericOperator.DIV, y))).next();
+        Expression<?> jrem = parser(SMTLibPrinter.print(
+                new NumericCompound<>(x, NumericOperator.REM, y))).next();
+        for (int[] c : cases) {
+            assertEquals(eval(jdiv, c[0], c[1]), c[0] / c[1]);
+            assertEquals(eval(jrem, c[0], c[1]), c[0] % c[1]);
+        }
+    }
+
+    @Test
+    public void testInterning() throws IOException, TermParserException {
+        InterningExpressionFactory factory = new InterningExpressionFactory();
+        StreamingTermParser p = new StreamingTermParser(
+                new SMTLibTokenizer(new StringReader(
+                        "(and (<= x (+ y 1)) (>= x 0)) (or (>= x 0) (<= x (+ y 1)))")),
+                Arrays.asList(x, y), factory);
+        Expression<?> e1 = p.next();
+        Expression<?> e2 = p.next();
+        assertSame(e1.getChildren()[0], e2.getChildren()[1]);
+        assertSame(e1.getChildren()[1], e2.getChildren()[0]);
+        // x, y, 1, (+ y 1), (<= ..), 0, (>= ..), and, or
+        assertEquals(factory.size(), 9);
+
+        // other instances of the same variables share the nodes
+        StreamingTermParser q = new StreamingTermParser(
+                new SMTLibTokenizer(new StringReader("(>= x 0)")),
+                Arrays.asList(new Variable<>(BuiltinTypes.SINT32, "x")), factory);
+        assertSame(q.next(), e1.getChildren()[1]);
+        assertEquals(factory.size(), 9);
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        String[] inputs = {"(<= x z)", "(not x y)", "(ite (<= x y) x)", "(mod x)", "(<= x)"};
+        for (String input : inputs) {
+            try {
+                parser(input).next();
+                fail("no error for " + input);
+            } catch (TermParserException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testTermParserUnknownSymbol() {
+        Script s = new SMTInterpol();
+        s.setLogic(Logics.QF_LIA);
+        s.declareFun("z", new Sort[0], s.sort("Int"));
+        Term t = s.term("<=", s.term("z"), s.numeral("1"));
+        try {
+            new TermParser(t, Collections.<Variable<?>>singleton(x)).parse();
+            fail("no error for unknown symbol");
+        } catch (TermParserException ex) {
+            // expected
+        } finally {
+            s.exit();
+        }
+    }
+}
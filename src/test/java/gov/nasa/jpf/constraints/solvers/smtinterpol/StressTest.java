@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import gov.nasa.jpf.constraints.util.ExpressionUtil;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Scalability tests on parametric families of interpolation queries.
+ *
+ * For every family, queries of growing size N are solved end to end
+ * (translation, solving, parsing of the interpolants), and the growth of
+ * time and peak heap use between consecutive sizes is compared to the
+ * baselines in stress-baselines.properties. The tests are in the "stress"
+ * group, which only runs with mvn test -Pstress.
+ */
+@Test(groups = "stress")
+public class StressTest {
+
+    private interface Family {
+
+        List<Expression<Boolean>> query(int n);
+    }
+
+    private final Constant<Integer> zero = c(0);
+
+    private final Constant<Integer> one = c(1);
+
+    private Properties baselines;
+
+    @BeforeClass(groups = "stress")
+    public void loadBaselines() throws IOException {
+        baselines = new Properties();
+        try (InputStream in = getClass().getResourceAsStream("/stress-baselines.properties")) {
+            baselines.load(in);
+        }
+    }
+
+    private static Constant<Integer> c(int value) {
+        return new Constant<>(BuiltinTypes.SINT32, value);
+    }
+
+    private static Variable<Integer> var(String name, int i) {
+        return new Variable<>(BuiltinTypes.SINT32, name + "_" + i);
+    }
+
+    private static Expression<Boolean> cmp(Expression<Integer> l,
+            NumericComparator cmp, Expression<Integer> r) {
+        return new NumericBooleanExpression(l, cmp, r);
+    }
+
+    private static Expression<Integer> plus(Expression<Integer> l, Expression<Integer> r) {
+        return new NumericCompound<>(l, NumericOperator.PLUS, r);
+    }
+
+    private static Expression<Integer> minus(Expression<Integer> l, Expression<Integer> r) {
+        return new NumericCompound<>(l, NumericOperator.MINUS, r);
+    }
+
+    /**
+     * the stream protocol of StreamTest with a sink of capacity n, connected
+     * and written to n times, followed by another write: one partition per
+     * step.
+     */
+    private final Family stream = new Family() {
+        @Override
+        public List<Expression<Boolean>> query(int n) {
+            List<Expression<Boolean>> ret = new ArrayList<>();
+            Variable<Integer> s = var("s", 0);
+            ret.add(ExpressionUtil.and(
+                    cmp(var("sink", 0), NumericComparator.EQ, zero),
+                    cmp(var("cap", 0), NumericComparator.EQ, c(n)),
+                    cmp(s, NumericComparator.GT, zero),
+                    cmp(var("sink", 0), NumericComparator.LE, zero),
+                    cmp(s, NumericComparator.EQ, var("sink", 1)),
+                    cmp(var("cap", 0), NumericComparator.EQ, var("cap", 1))));
+            for (int i = 1; i <= n; i++) {
+                ret.add(ExpressionUtil.and(
+                        cmp(var("sink", i), NumericComparator.GT, zero),
+                        cmp(var("cap", i), NumericComparator.GT, zero),
+                        cmp(var("sink", i), NumericComparator.EQ, var("sink", i + 1)),
+                        cmp(var("cap", i), NumericComparator.EQ,
+                                plus(var("cap", i + 1), one))));
+            }
+            ret.add(ExpressionUtil.and(
+                    cmp(var("sink", n + 1), NumericComparator.GT, zero),
+                    cmp(var("cap", n + 1), NumericComparator.GT, zero)));
+            return ret;
+        }
+    };
+
+    /**
+     * a straight-line program in SSA form: x_0 = 0, x_i = x_{i-1} + 1, and
+     * the assertion x_n < n.
+     */
+    private final Family ssa = new Family() {
+        @Override
+        public List<Expression<Boolean>> query(int n) {
+            List<Expression<Boolean>> ret = new ArrayList<>();
+            ret.add(cmp(var("x", 0), NumericComparator.EQ, zero));
+            for (int i = 1; i <= n; i++) {
+                ret.add(cmp(var("x", i), NumericComparator.EQ, plus(var("x", i - 1), one)));
+            }
+            ret.add(cmp(var("x", n), NumericComparator.LT, c(n)));
+            return ret;
+        }
+    };
+
+    /**
+     * two counters moving in opposite directions: the interpolants relate
+     * sums and differences of both, which SMTInterpol prints with shared
+     * subterms bound by let.
+     */
+    private final Family lets = new Family() {
+        @Override
+        public List<Expression<Boolean>> query(int n) {
+            List<Expression<Boolean>> ret = new ArrayList<>();
+            ret.add(ExpressionUtil.and(
+                    cmp(plus(var("x", 0), var("y", 0)), NumericComparator.GE, zero),
+                    cmp(minus(var("x", 0), var("y", 0)), NumericComparator.LE, zero)));
+            for (int i = 1; i <= n; i++) {
+                Expression<Integer> sum = plus(var("x", i - 1), var("y", i - 1));
+                Expression<Integer> diff = minus(var("x", i - 1), var("y", i - 1));
+                ret.add(ExpressionUtil.and(
+                        cmp(plus(var("x", i), var("y", i)), NumericComparator.GE, plus(sum, one)),
+                        cmp(minus(var("x", i), var("y", i)), NumericComparator.LE, diff),
+                        cmp(plus(var("x", i), var("y", i)), NumericComparator.LE,
+                                plus(plus(sum, diff), c(i)))));
+            }
+            ret.add(cmp(plus(var("x", n), var("y", n)), NumericComparator.LT, c(n)));
+            return ret;
+        }
+    };
+
+    /**
+     * x is one of n even values and y one of n odd values, but x = y.
+     */
+    private final Family disjunction = new Family() {
+        @Override
+        public List<Expression<Boolean>> query(int n) {
+            Variable<Integer> x = var("x", 0);
+            Variable<Integer> y = var("y", 0);
+            List<Expression<Boolean>> evens = new ArrayList<>();
+            List<Expression<Boolean>> odds = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                evens.add(cmp(x, NumericComparator.EQ, c(2 * i)));
+                odds.add(cmp(y, NumericComparator.EQ, c(2 * i + 1)));
+            }
+            return Arrays.asList(ExpressionUtil.or(evens),
+                    ExpressionUtil.or(odds),
+                    cmp(x, NumericComparator.EQ, y));
+        }
+    };
+
+    @Test
+    public void testStream() {
+        scale("stream", stream);
+    }
+
+    @Test
+    public void testSSA() {
+        scale("ssa", ssa);
+    }
+
+    @Test
+    public void testLets() {
+        scale("lets", lets);
+    }
+
+    @Test
+    public void testDisjunction() {
+        scale("disjunction", disjunction);
+    }
+
+    private void scale(String name, Family family) {
+        String[] text = baselines.getProperty(name + ".sizes").split(",");
+        int[] sizes = new int[text.length];
+        for (int i = 0; i < text.length; i++) {
+            sizes[i] = Integer.parseInt(text[i].trim());
+        }
+        double maxTime = Double.parseDouble(baselines.getProperty(name + ".time"));
+        double maxMemory = Double.parseDouble(baselines.getProperty(name + ".memory"));
+        long limit = Long.parseLong(baselines.getProperty(name + ".time.max"));
+
+        SMTInterpolSolver solver = new SMTInterpolSolver();
+        // warm up on the smallest size
+        measure(solver, family.query(sizes[0]));
+
+        long[][] results = new long[sizes.length][];
+        for (int i = 0; i < sizes.length; i++) {
+            results[i] = measure(solver, family.query(sizes[i]));
+            System.out.println(name + " N=" + sizes[i] + ": "
+                    + results[i][0] + "ms, " + (results[i][1] >> 10) + "KB");
+        }
+
+        assertTrue(results[sizes.length - 1][0] <= limit,
+                name + ": " + results[sizes.length - 1][0] + "ms > " + limit + "ms");
+        for (int i = 1; i < sizes.length; i++) {
+            double t = exponent(results[i - 1][0], results[i][0], sizes[i - 1], sizes[i]);
+            double m = exponent(results[i - 1][1], results[i][1], sizes[i - 1], sizes[i]);
+            assertTrue(t <= maxTime, name + ": time grows with N^" + t
+                    + " from N=" + sizes[i - 1] + " to N=" + sizes[i]);
+            assertTrue(m <= maxMemory, name + ": memory grows with N^" + m
+                    + " from N=" + sizes[i - 1] + " to N=" + sizes[i]);
+        }
+    }
+
+    /**
+     * @return time in milliseconds and peak heap use in bytes
+     */
+    private long[] measure(SMTInterpolSolver solver, List<Expression<Boolean>> query) {
+        List<MemoryPoolMXBean> heap = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heap.add(pool);
+            }
+        }
+        System.gc();
+        long before = 0;
+        for (MemoryPoolMXBean pool : heap) {
+            pool.resetPeakUsage();
+            before += pool.getUsage().getUsed();
+        }
+
+        long start = System.nanoTime();
+        List<Expression<Boolean>> itps = solver.getInterpolants(query);
+        long time = (System.nanoTime() - start) / 1000000;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heap) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        assertNotNull(itps);
+        assertEquals(itps.size(), query.size() - 1);
+        return new long[]{time, Math.max(peak - before, 1)};
+    }
+
+    private static double exponent(long v1, long v2, int n1, int n2) {
+        // below a few milliseconds, timing noise dominates
+        return Math.log(Math.max(v2, 5) / (double) Math.max(v1, 5))
+                / Math.log(n2 / (double) n1);
+    }
+}
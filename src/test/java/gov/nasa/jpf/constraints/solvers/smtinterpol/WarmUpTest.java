@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import java.util.List;
+import java.util.Properties;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class WarmUpTest {
+
+    @Test
+    public void testWarmUp() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("smtinterpol.pool.size", "2");
+        SMTInterpolSolver solver = new SMTInterpolSolver(config);
+        long time = solver.warmUp().get();
+        assertEquals(solver.getWarmUpTime(), time);
+        assertEquals(solver.getQueryCount(), 0);
+        assertEquals(solver.getFailureCount(), 0);
+        assertEquals(solver.getFallbackCount(), 0);
+
+        List<Expression<Boolean>> phis = ConcurrencyTest.query(1);
+        assertTrue(ConcurrencyTest.isSequenceInterpolant(
+                phis, solver.getInterpolants(phis)));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The PSYCO: A Predicate-based Symbolic Compositional Reasoning environment
+ * platform is licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package gov.nasa.jpf.constraints.solvers.smtinterpol;
+
+import gov.nasa.jpf.constraints.api.Expression;
+import gov.nasa.jpf.constraints.api.Variable;
+import gov.nasa.jpf.constraints.expressions.Constant;
+import gov.nasa.jpf.constraints.expressions.NumericBooleanExpression;
+import gov.nasa.jpf.constraints.expressions.NumericComparator;
+import gov.nasa.jpf.constraints.expressions.NumericCompound;
+import gov.nasa.jpf.constraints.expressions.NumericOperator;
+import gov.nasa.jpf.constraints.types.BuiltinTypes;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+public class WorkerPoolTest {
+
+    private final Variable<Integer> x = new Variable<>(BuiltinTypes.SINT32, "x");
+    private final Variable<Integer> y = new Variable<>(BuiltinTypes.SINT32, "y");
+
+    private List<Expression<Boolean>> query() {
+        Constant<Integer> c = new Constant<>(BuiltinTypes.SINT32, 5);
+        return Arrays.<Expression<Boolean>>asList(
+                new NumericBooleanExpression(x, NumericComparator.GT, y),
+                new NumericBooleanExpression(x, NumericComparator.EQ, c),
+                new NumericBooleanExpression(y, NumericComparator.GE, c));
+    }
+
+    private static Properties config() {
+        Properties config = new Properties();
+        config.setProperty("smtinterpol.workers", "1");
+        config.setProperty("smtinterpol.workers.classpath", System.getProperty("java.class.path"));
+        config.setProperty("smtinterpol.logic", "QF_LIA");
+        return config;
+    }
+
+    @Test
+    public void testRoundTripAndRestart() throws IOException, InterruptedException {
+        WorkerPool pool = WorkerPool.open(config());
+        try {
+            assertSame(WorkerPool.open(config()), pool);
+
+            List<Expression<Boolean>> query = query();
+            List<Expression<Boolean>> itps = pool.getInterpolants(query);
+            assertNotNull(itps);
+            assertEquals(itps.size(), 2);
+            assertTrue(ConcurrencyTest.isSequenceInterpolant(query, itps));
+
+            pool.kill();
+            itps = pool.getInterpolants(query);
+            assertNotNull(itps);
+            assertTrue(ConcurrencyTest.isSequenceInterpolant(query, itps));
+            assertEquals(pool.getRestartCount(), 1);
+        } finally {
+            pool.close();
+        }
+        WorkerPool next = WorkerPool.open(config());
+        assertNotSame(next, pool);
+        next.close();
+    }
+
+    // Java division truncates: -7 / 2 / 2 = -1
+    @Test
+    public void testNestedDivision() throws IOException, InterruptedException {
+        Constant<Integer> two = new Constant<>(BuiltinTypes.SINT32, 2);
+        NumericCompound<Integer> quarter = new NumericCompound<>(
+                new NumericCompound<>(x, NumericOperator.DIV, two), NumericOperator.DIV, two);
+        List<Expression<Boolean>> query = Arrays.<Expression<Boolean>>asList(
+                new NumericBooleanExpression(x, NumericComparator.EQ,
+                        new Constant<>(BuiltinTypes.SINT32, -7)),
+                new NumericBooleanExpression(quarter, NumericComparator.NE,
+                        new Constant<>(BuiltinTypes.SINT32, -1)));
+        WorkerPool pool = WorkerPool.open(config());
+        try {
+            List<Expression<Boolean>> itps = pool.getInterpolants(query);
+            assertNotNull(itps);
+            assertTrue(ConcurrencyTest.isSequenceInterpolant(query, itps));
+        } finally {
+            pool.close();
+        }
+    }
+}